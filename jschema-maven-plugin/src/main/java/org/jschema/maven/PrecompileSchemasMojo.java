@@ -0,0 +1,123 @@
+package org.jschema.maven;
+
+import org.apache.maven.model.Resource;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.jschema.parser.JsonParseError;
+import org.jschema.typeloader.JSchemaPrecompiledIndex;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses every .jschema and .json file in the source directories and writes the precompiled index
+ * that JSchemaTypeLoader reads at runtime instead of walking and parsing the sources.  Any parse error
+ * fails the build.
+ */
+@Mojo(name = "precompile", defaultPhase = LifecyclePhase.PROCESS_RESOURCES, threadSafe = true)
+public class PrecompileSchemasMojo extends AbstractMojo {
+
+  private static final String CONFIG_RESOURCE_PREFIX = "config";
+
+  @Parameter(defaultValue = "${project}", readonly = true, required = true)
+  private MavenProject project;
+
+  /**
+   * The directories to look for schema files in.  Defaults to the project's resource directories.
+   */
+  @Parameter
+  private List<File> sourceDirectories;
+
+  @Parameter(defaultValue = "${project.build.outputDirectory}", required = true)
+  private File outputDirectory;
+
+  @Parameter(property = "jschema.precompile.skip", defaultValue = "false")
+  private boolean skip;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    if (skip) {
+      getLog().info("Skipping JSchema precompilation");
+      return;
+    }
+    JSchemaPrecompiledIndex index = new JSchemaPrecompiledIndex();
+    List<String> failures = new ArrayList<String>();
+    for (File dir : getSourceDirectories()) {
+      if (dir.isDirectory()) {
+        String prefix = dir.getName().equals(CONFIG_RESOURCE_PREFIX) ? CONFIG_RESOURCE_PREFIX : "";
+        addFiles(index, prefix, dir, failures);
+      }
+    }
+    if (!failures.isEmpty()) {
+      for (String failure : failures) {
+        getLog().error(failure);
+      }
+      throw new MojoFailureException(failures.size() + " JSchema error(s), see above");
+    }
+    File indexFile = new File(outputDirectory, JSchemaPrecompiledIndex.RESOURCE_NAME);
+    try {
+      Files.createDirectories(indexFile.getParentFile().toPath());
+      OutputStream out = new BufferedOutputStream(new FileOutputStream(indexFile));
+      try {
+        index.writeTo(out);
+      } finally {
+        out.close();
+      }
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to write " + indexFile, e);
+    }
+    getLog().info("Precompiled " + index.getRootTypeNames().size() + " JSchema file(s) to " + indexFile);
+  }
+
+  private List<File> getSourceDirectories() {
+    if (sourceDirectories != null && !sourceDirectories.isEmpty()) {
+      return sourceDirectories;
+    }
+    List<File> dirs = new ArrayList<File>();
+    for (Resource resource : project.getResources()) {
+      dirs.add(new File(resource.getDirectory()));
+    }
+    return dirs;
+  }
+
+  private void addFiles(JSchemaPrecompiledIndex index, String relativePath, File dir, List<String> failures) throws MojoExecutionException {
+    File[] files = dir.listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      String path = relativePath.isEmpty() ? file.getName() : relativePath + '/' + file.getName();
+      if (file.isDirectory()) {
+        if (!file.getName().startsWith(".")) {
+          addFiles(index, path, file, failures);
+        }
+      } else if (file.getName().endsWith(".jschema") || file.getName().endsWith(".json")) {
+        addFile(index, path, file, failures);
+      }
+    }
+  }
+
+  private void addFile(JSchemaPrecompiledIndex index, String path, File file, List<String> failures) throws MojoExecutionException {
+    String text;
+    try {
+      text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to read " + file, e);
+    }
+    try {
+      for (JsonParseError error : index.addFile(path, text)) {
+        failures.add(file + " [" + error.getStart() + "-" + error.getEnd() + "] : " + error.getMessage());
+      }
+    } catch (IllegalArgumentException e) {
+      failures.add(file + " : " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package org.jschema.maven;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.jschema.typeloader.JSchemaPrecompiledIndex;
+import org.junit.Test;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class PrecompileSchemasMojoTest {
+
+  @Test
+  public void writesAnIndexOfTheSchemas() throws Exception {
+    File sources = Files.createTempDirectory("jschema-sources").toFile();
+    File output = Files.createTempDirectory("jschema-output").toFile();
+    write(new File(sources, "com/example/Invoice.jschema"), "{\"id\" : \"int\", \"customer\" : \"string\"}");
+    write(new File(sources, "com/example/Sample.json"), "{\"name\" : \"Acme\"}");
+
+    newMojo(sources, output).execute();
+
+    InputStream in = new FileInputStream(new File(output, JSchemaPrecompiledIndex.RESOURCE_NAME));
+    try {
+      JSchemaPrecompiledIndex index = JSchemaPrecompiledIndex.read(in);
+      assertEquals(new HashSet<String>(Arrays.asList("com.example.Invoice", "com.example.Sample")), index.getRootTypeNames());
+    } finally {
+      in.close();
+    }
+  }
+
+  @Test(expected = MojoFailureException.class)
+  public void failsOnParseErrors() throws Exception {
+    File sources = Files.createTempDirectory("jschema-sources").toFile();
+    File output = Files.createTempDirectory("jschema-output").toFile();
+    write(new File(sources, "com/example/Broken.jschema"), "{\"id\" : ");
+
+    newMojo(sources, output).execute();
+  }
+
+  @Test
+  public void skipWritesNothing() throws Exception {
+    File sources = Files.createTempDirectory("jschema-sources").toFile();
+    File output = Files.createTempDirectory("jschema-output").toFile();
+    write(new File(sources, "com/example/Invoice.jschema"), "{\"id\" : \"int\"}");
+
+    PrecompileSchemasMojo mojo = newMojo(sources, output);
+    set(mojo, "skip", true);
+    mojo.execute();
+
+    assertFalse(new File(output, JSchemaPrecompiledIndex.RESOURCE_NAME).exists());
+  }
+
+  private static PrecompileSchemasMojo newMojo(File sources, File output) throws Exception {
+    PrecompileSchemasMojo mojo = new PrecompileSchemasMojo();
+    set(mojo, "sourceDirectories", Collections.singletonList(sources));
+    set(mojo, "outputDirectory", output);
+    return mojo;
+  }
+
+  private static void set(Object target, String name, Object value) throws Exception {
+    Field field = target.getClass().getDeclaredField(name);
+    field.setAccessible(true);
+    field.set(target, value);
+  }
+
+  private static void write(File file, String text) throws IOException {
+    Files.createDirectories(file.getParentFile().toPath());
+    Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+  }
+}
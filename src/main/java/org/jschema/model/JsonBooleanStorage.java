@@ -0,0 +1,83 @@
+package org.jschema.model;
+
+import java.util.Arrays;
+
+/**
+ * Backing list for JsonLists of booleans, holding the elements in a bitset.
+ */
+class JsonBooleanStorage extends JsonPrimitiveStorage {
+
+  private long[] _bits = new long[1];
+
+  boolean getBoolean(int i) {
+    if (isBoxed()) {
+      return (Boolean) get(i);
+    }
+    checkIndex(i);
+    return bit(i);
+  }
+
+  void addBoolean(boolean value) {
+    if (isBoxed()) {
+      add(value);
+    } else {
+      ensureCapacity(_size + 1);
+      setBit(_size++, value);
+      modCount++;
+    }
+  }
+
+  private boolean bit(int i) {
+    return (_bits[i >>> 6] & (1L << i)) != 0;
+  }
+
+  private void setBit(int i, boolean value) {
+    if (value) {
+      _bits[i >>> 6] |= 1L << i;
+    } else {
+      _bits[i >>> 6] &= ~(1L << i);
+    }
+  }
+
+  @Override
+  boolean accepts(Object value) {
+    return value instanceof Boolean;
+  }
+
+  @Override
+  Object box(int i) {
+    return bit(i);
+  }
+
+  @Override
+  void store(int i, Object value) {
+    setBit(i, (Boolean) value);
+  }
+
+  @Override
+  void ensureCapacity(int capacity) {
+    int words = (capacity + 63) >>> 6;
+    if (words > _bits.length) {
+      _bits = Arrays.copyOf(_bits, Math.max(words, _bits.length * 2));
+    }
+  }
+
+  @Override
+  void shift(int from, int to) {
+    int count = _size - from;
+    if (to > from) {
+      for (int i = count - 1; i >= 0; i--) {
+        setBit(to + i, bit(from + i));
+      }
+    } else {
+      for (int i = 0; i < count; i++) {
+        setBit(to + i, bit(from + i));
+      }
+    }
+  }
+
+  @Override
+  void release() {
+    _bits = null;
+  }
+}
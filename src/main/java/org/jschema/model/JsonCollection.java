@@ -5,10 +5,16 @@ import gw.lang.reflect.IType;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 public class JsonCollection<T> extends JsonObject implements Collection<T> {
 
-  Collection<T> _backingCollection;
+  final Collection<T> _backingCollection;
+  private JsonObject _realOwner;
+  private ValueConverter _valueConverter;
+  private boolean _tracking;
+  private boolean _changed;
 
   protected JsonCollection() {
     this(null, new ArrayList<T>());
@@ -19,6 +25,38 @@ public class JsonCollection<T> extends JsonObject implements Collection<T> {
     _backingCollection = backingCollection;
   }
 
+  protected JsonCollection(IType explicitType, Collection<T> backingCollection, JsonParentIndex parentIndex) {
+    super(explicitType, parentIndex);
+    _backingCollection = backingCollection;
+  }
+
+  /**
+   * Makes this collection a view whose parent tracking and change tracking act on the given owner.
+   */
+  public JsonCollection withRealOwner(JsonObject realOwner) {
+    _realOwner = realOwner;
+    return this;
+  }
+
+  public JsonCollection withValueConverter(ValueConverter valueConverter) {
+    _valueConverter = valueConverter;
+    return this;
+  }
+
+  @Override
+  protected JsonObject getRealOwner() {
+    return _realOwner == null ? this : _realOwner;
+  }
+
+  @Override
+  protected Object convertValue(Object value) {
+    return _valueConverter == null ? value : _valueConverter.convert(value);
+  }
+
+  protected ValueConverter getValueConverter() {
+    return _valueConverter;
+  }
+
   @Override
   public int size() {
     return _backingCollection.size();
@@ -36,7 +74,20 @@ public class JsonCollection<T> extends JsonObject implements Collection<T> {
 
   @Override
   public Iterator<T> iterator() {
-    return (Iterator<T>) new JsonIterator<T>(_backingCollection.iterator()).withValueConverter(getValueConverter()).withRealOwner(getRealOwner());
+    return new TrackingIterator(_backingCollection.iterator());
+  }
+
+  /**
+   * Read-only traversal straight over the backing collection, without the parent tracking iterator.
+   */
+  @Override
+  public Spliterator<T> spliterator() {
+    return _backingCollection.spliterator();
+  }
+
+  @Override
+  public void forEach(Consumer<? super T> action) {
+    _backingCollection.forEach(action);
   }
 
   @Override
@@ -51,14 +102,18 @@ public class JsonCollection<T> extends JsonObject implements Collection<T> {
 
   @Override
   public boolean add(T o) {
+    beforeChange();
     boolean add = _backingCollection.add(o);
     setThisAsParentFor(o);
+    getRealOwner().markChanged();
     return add;
   }
 
   @Override
   public boolean remove(Object o) {
+    beforeChange();
     setNullAsParentFor(o);
+    getRealOwner().markChanged();
     return _backingCollection.remove(o);
   }
 
@@ -69,36 +124,82 @@ public class JsonCollection<T> extends JsonObject implements Collection<T> {
 
   @Override
   public boolean addAll(Collection<? extends T> objects) {
+    beforeChange();
     for (Object object : objects) {
       setThisAsParentFor(object);
     }
+    getRealOwner().markChanged();
     return _backingCollection.addAll(objects);
   }
 
   @Override
   public boolean removeAll(Collection<?> objects) {
+    beforeChange();
     for (Object object : objects) {
       setNullAsParentFor(object);
     }
+    getRealOwner().markChanged();
     return _backingCollection.removeAll(objects);
   }
 
   @Override
   public boolean retainAll(Collection<?> objects) {
+    beforeChange();
     for (Object o : _backingCollection) {
       if (!objects.contains(o)) {
         setNullAsParentFor(o);
       }
     }
+    getRealOwner().markChanged();
     return _backingCollection.retainAll(objects);
   }
 
   @Override
   public void clear() {
+    beforeChange();
     for (Object o : _backingCollection) {
       setNullAsParentFor(o);
     }
     _backingCollection.clear();
+    getRealOwner().markChanged();
+  }
+
+  @Override
+  public boolean isFrozen() {
+    JsonObject realOwner = getRealOwner();
+    if (realOwner != this) {
+      return realOwner.isFrozen();
+    }
+    return _backingCollection instanceof JsonFrozenList || _backingCollection instanceof JsonSnapshotList;
+  }
+
+  @Override
+  protected void resetChanges() {
+    if (isFrozen()) {
+      return;
+    }
+    _tracking = true;
+    _changed = false;
+  }
+
+  @Override
+  protected void markChanged() {
+    if (_tracking) {
+      _changed = true;
+    }
+  }
+
+  @Override
+  public boolean hasChanges() {
+    if (!_tracking || _changed) {
+      return true;
+    }
+    for (Object o : _backingCollection) {
+      if (o instanceof JsonObject && ((JsonObject) o).hasChanges()) {
+        return true;
+      }
+    }
+    return false;
   }
 
   @Override
@@ -115,4 +216,32 @@ public class JsonCollection<T> extends JsonObject implements Collection<T> {
     return true;
   }
 
-}
\ No newline at end of file
+
+  private class TrackingIterator implements Iterator<T> {
+    private final Iterator<T> _backingIterator;
+    private T _current;
+
+    private TrackingIterator(Iterator<T> backingIterator) {
+      _backingIterator = backingIterator;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return _backingIterator.hasNext();
+    }
+
+    @Override
+    public T next() {
+      _current = _backingIterator.next();
+      return _current;
+    }
+
+    @Override
+    public void remove() {
+      beforeChange();
+      setNullAsParentFor(_current);
+      _backingIterator.remove();
+      getRealOwner().markChanged();
+    }
+  }
+}
@@ -0,0 +1,206 @@
+package org.jschema.model;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Pre-order traversal of a JSON tree, expanding each map or list only when it is reached.  The maps
+ * and lists entered and not yet finished are kept on a stack, each with a cursor over its children,
+ * so walking the tree allocates nothing per leaf and copies no child collections.
+ *
+ * A split hands over everything up to the middle of the remaining children of the shallowest map or
+ * list that has two or more left.  The size reported is the number of children left at each level,
+ * which is exact, and reported as such, for a chunk of children that are all leaves.
+ */
+class JsonDescendentSpliterator implements Spliterator<Object> {
+
+  private static final Object NONE = new Object();
+
+  private final ArrayDeque<Level> _stack = new ArrayDeque<Level>();
+  private boolean _leaves;
+
+  JsonDescendentSpliterator(Object root) {
+    Level level = new Level(root);
+    level._self = root;
+    _stack.addLast(level);
+  }
+
+  private JsonDescendentSpliterator() {
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super Object> action) {
+    while (!_stack.isEmpty()) {
+      Level top = _stack.peekLast();
+      if (top._self != NONE) {
+        Object self = top._self;
+        top._self = NONE;
+        action.accept(self);
+        return true;
+      }
+      if (top.remaining() > 0) {
+        Object child = top.next();
+        if (isContainer(child)) {
+          _stack.addLast(new Level(child));
+        }
+        action.accept(child);
+        return true;
+      }
+      _stack.pollLast();
+    }
+    return false;
+  }
+
+  @Override
+  public Spliterator<Object> trySplit() {
+    while (true) {
+      for (Level level : _stack) {
+        if (level.remaining() >= 2) {
+          return splitAt(level);
+        }
+      }
+      Level top = _stack.peekLast();
+      if (top == null) {
+        return null;
+      }
+      if (top._self != NONE) {
+        if (top.remaining() == 0) {
+          return null;
+        }
+        // the node comes before its only child, so it is handed over on its own
+        JsonDescendentSpliterator prefix = new JsonDescendentSpliterator();
+        Level self = new Level(null);
+        self._self = top._self;
+        prefix._stack.addLast(self);
+        top._self = NONE;
+        return prefix;
+      }
+      if (top.remaining() == 0) {
+        _stack.pollLast();
+        continue;
+      }
+      // a single child left, so look for something to split below it
+      Object child = top.next();
+      Level level = new Level(isContainer(child) ? child : null);
+      level._self = child;
+      _stack.addLast(level);
+      if (!isContainer(child)) {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Hands the levels below the given one, and the first half of its remaining children, to a new
+   * spliterator.
+   */
+  private JsonDescendentSpliterator splitAt(Level level) {
+    level.toList();
+    int middle = level._index + level.remaining() / 2;
+    JsonDescendentSpliterator prefix = new JsonDescendentSpliterator();
+    Level head = new Level(level._list, level._index, middle);
+    head._self = level._self;
+    level._self = NONE;
+    level._index = middle;
+    prefix._stack.addLast(head);
+    ArrayDeque<Level> deeper = new ArrayDeque<Level>();
+    while (_stack.peekLast() != level) {
+      deeper.addFirst(_stack.pollLast());
+    }
+    prefix._stack.addAll(deeper);
+    prefix._leaves = _leaves || (prefix._stack.size() == 1 && head._self == NONE && head.allLeaves());
+    _leaves = _leaves || (_stack.size() == 1 && level.allLeaves());
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    long size = 0;
+    for (Level level : _stack) {
+      size += level.remaining() + (level._self != NONE ? 1 : 0);
+    }
+    return size;
+  }
+
+  @Override
+  public int characteristics() {
+    return _leaves ? ORDERED | SIZED | SUBSIZED : ORDERED;
+  }
+
+  private static boolean isContainer(Object node) {
+    return node instanceof Map || node instanceof List;
+  }
+
+  /**
+   * A map or list being walked: the children left are read by index from a random access list, or
+   * else from an iterator over them.  Also holds the node itself while it has not been visited yet.
+   */
+  private static final class Level {
+    private Object _self = NONE;
+    private List<?> _list;
+    private Iterator<?> _iterator;
+    private int _index;
+    private int _end;
+
+    private Level(Object node) {
+      if (node instanceof List && node instanceof RandomAccess) {
+        _list = (List<?>) node;
+        _end = _list.size();
+      } else if (node instanceof Map || node instanceof List) {
+        Iterable<?> children = JsonObject.childrenOf(node);
+        _iterator = children.iterator();
+        _end = node instanceof Map ? ((Map<?, ?>) node).size() : ((List<?>) node).size();
+      }
+    }
+
+    private Level(List<?> list, int index, int end) {
+      _list = list;
+      _index = index;
+      _end = end;
+    }
+
+    private int remaining() {
+      return _end - _index;
+    }
+
+    private Object next() {
+      return _list != null ? _list.get(_index++) : nextFromIterator();
+    }
+
+    private Object nextFromIterator() {
+      _index++;
+      return _iterator.next();
+    }
+
+    /**
+     * Takes the children left out of the iterator, so that they can be split by index.
+     */
+    private void toList() {
+      if (_list == null) {
+        Object[] children = new Object[remaining()];
+        for (int i = 0; i < children.length; i++) {
+          children[i] = _iterator.next();
+        }
+        _iterator = null;
+        _list = Arrays.asList(children);
+        _index = 0;
+        _end = children.length;
+      }
+    }
+
+    private boolean allLeaves() {
+      for (int i = _index; i < _end; i++) {
+        if (isContainer(_list.get(i))) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
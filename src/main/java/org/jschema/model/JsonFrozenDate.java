@@ -0,0 +1,60 @@
+package org.jschema.model;
+
+import java.util.Date;
+
+/**
+ * The Date values of frozen trees, which reject every change so that a frozen tree stays immutable.
+ * Cloning one gives an ordinary, mutable Date.
+ */
+class JsonFrozenDate extends Date {
+
+  JsonFrozenDate(long time) {
+    super(time);
+  }
+
+  @Override
+  public void setTime(long time) {
+    throw new UnsupportedOperationException("Cannot modify a date in a frozen JSON object");
+  }
+
+  @Override
+  @Deprecated
+  public void setYear(int year) {
+    throw new UnsupportedOperationException("Cannot modify a date in a frozen JSON object");
+  }
+
+  @Override
+  @Deprecated
+  public void setMonth(int month) {
+    throw new UnsupportedOperationException("Cannot modify a date in a frozen JSON object");
+  }
+
+  @Override
+  @Deprecated
+  public void setDate(int date) {
+    throw new UnsupportedOperationException("Cannot modify a date in a frozen JSON object");
+  }
+
+  @Override
+  @Deprecated
+  public void setHours(int hours) {
+    throw new UnsupportedOperationException("Cannot modify a date in a frozen JSON object");
+  }
+
+  @Override
+  @Deprecated
+  public void setMinutes(int minutes) {
+    throw new UnsupportedOperationException("Cannot modify a date in a frozen JSON object");
+  }
+
+  @Override
+  @Deprecated
+  public void setSeconds(int seconds) {
+    throw new UnsupportedOperationException("Cannot modify a date in a frozen JSON object");
+  }
+
+  @Override
+  public Object clone() {
+    return new Date(getTime());
+  }
+}
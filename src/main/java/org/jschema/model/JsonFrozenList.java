@@ -0,0 +1,50 @@
+package org.jschema.model;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list storage for frozen JsonLists, holding either objects or, for lists of ints, unboxed
+ * longs.  All state is final, apart from the hash code, which is cached the same racy-but-safe way as
+ * String's.
+ */
+class JsonFrozenList extends AbstractList<Object> implements RandomAccess {
+
+  final Object[] _values;
+  private final long[] _longs;
+  private int _hash;
+
+  JsonFrozenList(Object[] values) {
+    _values = values;
+    _longs = null;
+  }
+
+  JsonFrozenList(long[] longs) {
+    _values = null;
+    _longs = longs;
+  }
+
+  long getLong(int i) {
+    return _longs != null ? _longs[i] : ((Number) _values[i]).longValue();
+  }
+
+  @Override
+  public Object get(int i) {
+    return _longs != null ? (Object) _longs[i] : _values[i];
+  }
+
+  @Override
+  public int size() {
+    return _longs != null ? _longs.length : _values.length;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = _hash;
+    if (hash == 0) {
+      hash = super.hashCode();
+      _hash = hash;
+    }
+    return hash;
+  }
+}
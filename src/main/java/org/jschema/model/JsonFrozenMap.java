@@ -0,0 +1,156 @@
+package org.jschema.model;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable map storage for frozen JsonMaps: keys and values in two arrays, in insertion order, with
+ * an open addressing index for larger maps.  Frozen copies of typed maps keep their slot layout, with
+ * the position of each slot's value, so that they can still be read by slot ordinal.  All state is
+ * final, apart from the hash code, which is cached the same racy-but-safe way as String's.
+ */
+class JsonFrozenMap<T> extends AbstractMap<String, T> {
+
+  private static final int LINEAR_SCAN_SIZE = 8;
+
+  private final String[] _keys;
+  final Object[] _values;
+  private final int[] _table;
+  private final JsonSlotLayout _layout;
+  private final int[] _slotIndexes;
+  private int _hash;
+
+  JsonFrozenMap(String[] keys, Object[] values) {
+    this(keys, values, null);
+  }
+
+  JsonFrozenMap(String[] keys, Object[] values, JsonSlotLayout layout) {
+    _keys = keys;
+    _values = values;
+    _layout = layout;
+    if (layout != null) {
+      int[] slotIndexes = new int[layout.size()];
+      Arrays.fill(slotIndexes, -1);
+      for (int i = 0; i < keys.length; i++) {
+        int ordinal = layout.getOrdinal(keys[i]);
+        if (ordinal >= 0) {
+          slotIndexes[ordinal] = i;
+        }
+      }
+      _slotIndexes = slotIndexes;
+    } else {
+      _slotIndexes = null;
+    }
+    if (keys.length > LINEAR_SCAN_SIZE) {
+      int capacity = Integer.highestOneBit(keys.length * 2 - 1) << 1;
+      int[] table = new int[capacity];
+      Arrays.fill(table, -1);
+      for (int i = 0; i < keys.length; i++) {
+        int slot = keys[i].hashCode() & (capacity - 1);
+        while (table[slot] >= 0) {
+          slot = (slot + 1) & (capacity - 1);
+        }
+        table[slot] = i;
+      }
+      _table = table;
+    } else {
+      _table = null;
+    }
+  }
+
+  JsonSlotLayout getLayout() {
+    return _layout;
+  }
+
+  T getSlot(int ordinal) {
+    int i = _slotIndexes[ordinal];
+    return i < 0 ? null : (T) _values[i];
+  }
+
+  private int indexOf(Object key) {
+    if (!(key instanceof String)) {
+      return -1;
+    }
+    if (_table == null) {
+      for (int i = 0; i < _keys.length; i++) {
+        if (_keys[i].equals(key)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+    int mask = _table.length - 1;
+    for (int slot = key.hashCode() & mask; _table[slot] >= 0; slot = (slot + 1) & mask) {
+      if (_keys[_table[slot]].equals(key)) {
+        return _table[slot];
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public int size() {
+    return _keys.length;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  @Override
+  public T get(Object key) {
+    int i = indexOf(key);
+    return i < 0 ? null : (T) _values[i];
+  }
+
+  @Override
+  public void forEach(BiConsumer<? super String, ? super T> action) {
+    for (int i = 0; i < _keys.length; i++) {
+      action.accept(_keys[i], (T) _values[i]);
+    }
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = _hash;
+    if (hash == 0) {
+      for (int i = 0; i < _keys.length; i++) {
+        hash += _keys[i].hashCode() ^ (_values[i] == null ? 0 : _values[i].hashCode());
+      }
+      _hash = hash;
+    }
+    return hash;
+  }
+
+  @Override
+  public Set<Entry<String, T>> entrySet() {
+    return new AbstractSet<Entry<String, T>>() {
+      @Override
+      public Iterator<Entry<String, T>> iterator() {
+        return new Iterator<Entry<String, T>>() {
+          private int _next;
+
+          @Override
+          public boolean hasNext() {
+            return _next < _keys.length;
+          }
+
+          @Override
+          public Entry<String, T> next() {
+            if (_next >= _keys.length) {
+              throw new NoSuchElementException();
+            }
+            int i = _next++;
+            return new SimpleImmutableEntry<String, T>(_keys[i], (T) _values[i]);
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return _keys.length;
+      }
+    };
+  }
+}
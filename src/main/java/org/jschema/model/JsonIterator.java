@@ -2,9 +2,13 @@ package org.jschema.model;
 
 import java.util.Iterator;
 
+/**
+ * @deprecated the iterators of JsonCollection, JsonList and the JsonMap views do their own parent
+ * tracking, so they no longer need wrapping.  This now only delegates to the given iterator.
+ */
+@Deprecated
 public class JsonIterator<T> extends JsonObject implements Iterator<T> {
   private Iterator<T> _backingIterator;
-  private T _current;
 
   public JsonIterator(Iterator<T> iterator) {
     super(null);
@@ -18,13 +22,11 @@ public class JsonIterator<T> extends JsonObject implements Iterator<T> {
 
   @Override
   public T next() {
-    _current = _backingIterator.next();
-    return _current;
+    return _backingIterator.next();
   }
 
   @Override
   public void remove() {
-    setNullAsParentFor(_current);
     _backingIterator.remove();
   }
 }
@@ -1,13 +1,15 @@
 package org.jschema.model;
 
 import gw.lang.reflect.IType;
+import gw.lang.reflect.TypeSystem;
+import gw.lang.reflect.java.JavaTypes;
 
 import java.math.BigDecimal;
 import java.util.*;
 
 public class JsonList<T> extends JsonCollection<T> implements List<T> {
 
-  List<T> _backingList;
+  final List<T> _backingList;
 
   public JsonList() {
     this(null, new ArrayList<T>());
@@ -18,7 +20,14 @@ public class JsonList<T> extends JsonCollection<T> implements List<T> {
   }
 
   public JsonList(IType explicitType) {
-    this(explicitType, new ArrayList<T>());
+    this(explicitType, backingListFor(explicitType));
+  }
+
+  /**
+   * Creates a list in a detached tree; see {@link JsonParentIndex}.
+   */
+  public JsonList(IType explicitType, JsonParentIndex parentIndex) {
+    this(explicitType, JsonList.<T>backingListFor(explicitType), parentIndex);
   }
 
   JsonList(IType explicitType, List<T> backingList) {
@@ -26,12 +35,90 @@ public class JsonList<T> extends JsonCollection<T> implements List<T> {
     _backingList = backingList;
   }
 
+  private JsonList(IType explicitType, List<T> backingList, JsonParentIndex parentIndex) {
+    super(explicitType, backingList, parentIndex);
+    _backingList = backingList;
+  }
+
+  /**
+   * Lists of ints and booleans are stored unboxed.  The number type is BigDecimal, so lists of
+   * numbers are not.
+   */
+  private static <T> List<T> backingListFor(IType explicitType) {
+    if (explicitType != null && explicitType.isParameterizedType() &&
+      TypeSystem.get(JsonList.class).equals(explicitType.getGenericType())) {
+      IType componentType = explicitType.getTypeParameters()[0];
+      if (JavaTypes.LONG().equals(componentType)) {
+        return (List<T>) new JsonLongStorage();
+      } else if (JavaTypes.BOOLEAN().equals(componentType)) {
+        return (List<T>) new JsonBooleanStorage();
+      }
+    }
+    return new ArrayList<T>();
+  }
+
+  @Override
+  public JsonList<T> freeze() {
+    return _backingList instanceof JsonFrozenList ? this : frozenCopy();
+  }
+
+  @Override
+  public JsonList<T> snapshot() {
+    JsonList<T> snapshot = pendingSnapshot();
+    startSnapshotEpoch();
+    return snapshot;
+  }
+
+  JsonList<T> pendingSnapshot() {
+    if (isFrozen()) {
+      return this;
+    }
+    JsonList<T> snapshot = (JsonList<T>) getPendingSnapshot();
+    if (snapshot == null) {
+      JsonSnapshotList snapshotList = new JsonSnapshotList(this);
+      snapshot = new JsonList<T>(getExplicitType(), (List<T>) (List) snapshotList);
+      setPendingSnapshot(snapshot);
+    }
+    return snapshot;
+  }
+
+  @Override
+  void materializeSnapshot(JsonObject snapshot) {
+    ((JsonSnapshotList) ((JsonList) snapshot)._backingList).materialize();
+  }
+
+  JsonList<T> frozenCopy() {
+    if (_backingList instanceof JsonLongStorage) {
+      long[] longs = ((JsonLongStorage) _backingList).toLongArray();
+      if (longs != null) {
+        return new JsonList<T>(getExplicitType(), new JsonFrozenList(longs));
+      }
+    }
+    return frozenCopy(getExplicitType(), _backingList);
+  }
+
+  static <T> JsonList<T> frozenCopy(IType explicitType, List<?> list) {
+    Object[] values = new Object[list.size()];
+    int i = 0;
+    for (Object value : list) {
+      values[i++] = frozenCopyOf(value);
+    }
+    return new JsonList<T>(explicitType, new JsonFrozenList(values));
+  }
+
+  private JsonList(IType explicitType, JsonFrozenList frozenList) {
+    super(explicitType, (Collection<T>) (Collection) frozenList);
+    _backingList = (List<T>) (List) frozenList;
+  }
+
   @Override
   public boolean addAll(int i, Collection<? extends T> objects) {
+    beforeChange();
     boolean b = _backingList.addAll(i, objects);
     for (Object object : objects) {
       setThisAsParentFor(object);
     }
+    markChanged();
     return b;
   }
 
@@ -68,24 +155,71 @@ public class JsonList<T> extends JsonCollection<T> implements List<T> {
     return (Boolean) get(i);
   }
 
+  /**
+   * Reads an int element without boxing when the list stores its elements unboxed.
+   */
+  public long getLongValue(int i) {
+    if (_backingList instanceof JsonLongStorage) {
+      return ((JsonLongStorage) _backingList).getLong(i);
+    } else if (_backingList instanceof JsonFrozenList) {
+      return ((JsonFrozenList) _backingList).getLong(i);
+    } else if (_backingList instanceof JsonSnapshotList) {
+      return ((JsonSnapshotList) _backingList).getLong(i);
+    }
+    return ((Number) get(i)).longValue();
+  }
+
+  public boolean getBooleanValue(int i) {
+    if (_backingList instanceof JsonBooleanStorage) {
+      return ((JsonBooleanStorage) _backingList).getBoolean(i);
+    }
+    return (Boolean) get(i);
+  }
+
+  public void addLong(long value) {
+    beforeChange();
+    if (_backingList instanceof JsonLongStorage) {
+      ((JsonLongStorage) _backingList).addLong(value);
+      markChanged();
+    } else {
+      add((T) Long.valueOf(value));
+    }
+  }
+
+  public void addBoolean(boolean value) {
+    beforeChange();
+    if (_backingList instanceof JsonBooleanStorage) {
+      ((JsonBooleanStorage) _backingList).addBoolean(value);
+      markChanged();
+    } else {
+      add((T) Boolean.valueOf(value));
+    }
+  }
+
   @Override
   public T set(int i, T o) {
+    beforeChange();
     T evicted = _backingList.set(i, o);
     setThisAsParentFor(o);
     nullParentIfNotSame(o, evicted);
+    markChanged();
     return evicted;
   }
 
   @Override
   public void add(int i, T o) {
+    beforeChange();
     _backingList.add(i, o);
     setThisAsParentFor(o);
+    markChanged();
   }
 
   @Override
   public T remove(int i) {
+    beforeChange();
     T remove = _backingList.remove(i);
     setNullAsParentFor(remove);
+    markChanged();
     return remove;
   }
 
@@ -101,12 +235,12 @@ public class JsonList<T> extends JsonCollection<T> implements List<T> {
 
   @Override
   public ListIterator<T> listIterator() {
-    return (ListIterator<T>) new JsonListIterator<T>(_backingList.listIterator()).withValueConverter(getValueConverter()).withRealOwner(getRealOwner());
+    return new TrackingListIterator(_backingList.listIterator());
   }
 
   @Override
   public ListIterator<T> listIterator(int i) {
-    return (ListIterator<T>) new JsonListIterator<T>(_backingList.listIterator()).withValueConverter(getValueConverter()).withRealOwner(getRealOwner());
+    return new TrackingListIterator(_backingList.listIterator(i));
   }
 
   @Override
@@ -118,4 +252,70 @@ public class JsonList<T> extends JsonCollection<T> implements List<T> {
   public String toString() {
     return _backingList.toString();
   }
+
+  private class TrackingListIterator implements ListIterator<T> {
+    private final ListIterator<T> _backingIterator;
+    private T _current;
+
+    private TrackingListIterator(ListIterator<T> backingIterator) {
+      _backingIterator = backingIterator;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return _backingIterator.hasNext();
+    }
+
+    @Override
+    public T next() {
+      _current = _backingIterator.next();
+      return _current;
+    }
+
+    @Override
+    public boolean hasPrevious() {
+      return _backingIterator.hasPrevious();
+    }
+
+    @Override
+    public T previous() {
+      _current = _backingIterator.previous();
+      return _current;
+    }
+
+    @Override
+    public int nextIndex() {
+      return _backingIterator.nextIndex();
+    }
+
+    @Override
+    public int previousIndex() {
+      return _backingIterator.previousIndex();
+    }
+
+    @Override
+    public void remove() {
+      beforeChange();
+      setNullAsParentFor(_current);
+      _backingIterator.remove();
+      getRealOwner().markChanged();
+    }
+
+    @Override
+    public void set(T o) {
+      beforeChange();
+      setNullAsParentFor(_current);
+      setThisAsParentFor(o);
+      _backingIterator.set(o);
+      getRealOwner().markChanged();
+    }
+
+    @Override
+    public void add(T o) {
+      beforeChange();
+      setThisAsParentFor(o);
+      _backingIterator.add(o);
+      getRealOwner().markChanged();
+    }
+  }
 }
@@ -2,10 +2,14 @@ package org.jschema.model;
 
 import java.util.ListIterator;
 
+/**
+ * @deprecated the list iterators of JsonList do their own parent tracking, so they no longer need
+ * wrapping.  This now only delegates to the given iterator.
+ */
+@Deprecated
 public class JsonListIterator<T> extends JsonObject implements ListIterator<T> {
 
   private ListIterator<T> _backingIterator;
-  private T _current;
 
   public JsonListIterator(ListIterator<T> backingIterator) {
     super(null);
@@ -19,8 +23,7 @@ public class JsonListIterator<T> extends JsonObject implements ListIterator<T> {
 
   @Override
   public T next() {
-    _current = _backingIterator.next();
-    return _current;
+    return _backingIterator.next();
   }
 
   @Override
@@ -30,8 +33,7 @@ public class JsonListIterator<T> extends JsonObject implements ListIterator<T> {
 
   @Override
   public T previous() {
-    _current = _backingIterator.previous();
-    return _current;
+    return _backingIterator.previous();
   }
 
   @Override
@@ -46,20 +48,16 @@ public class JsonListIterator<T> extends JsonObject implements ListIterator<T> {
 
   @Override
   public void remove() {
-    setNullAsParentFor(_current);
     _backingIterator.remove();
   }
 
   @Override
   public void set(T o) {
-    setNullAsParentFor(_current);
-    setThisAsParentFor(o);
     _backingIterator.set(o);
   }
 
   @Override
   public void add(T o) {
-    setThisAsParentFor(o);
     _backingIterator.add(o);
   }
 }
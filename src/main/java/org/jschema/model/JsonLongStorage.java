@@ -0,0 +1,68 @@
+package org.jschema.model;
+
+import java.util.Arrays;
+
+/**
+ * Backing list for JsonLists of ints, holding the elements in a long array.
+ */
+class JsonLongStorage extends JsonPrimitiveStorage {
+
+  private long[] _values = new long[10];
+
+  long getLong(int i) {
+    if (isBoxed()) {
+      return ((Number) get(i)).longValue();
+    }
+    checkIndex(i);
+    return _values[i];
+  }
+
+  /**
+   * @return a copy of the elements, or null if the list has fallen back to boxed storage
+   */
+  long[] toLongArray() {
+    return isBoxed() ? null : Arrays.copyOf(_values, _size);
+  }
+
+  void addLong(long value) {
+    if (isBoxed()) {
+      add(value);
+    } else {
+      ensureCapacity(_size + 1);
+      _values[_size++] = value;
+      modCount++;
+    }
+  }
+
+  @Override
+  boolean accepts(Object value) {
+    return value instanceof Long;
+  }
+
+  @Override
+  Object box(int i) {
+    return _values[i];
+  }
+
+  @Override
+  void store(int i, Object value) {
+    _values[i] = (Long) value;
+  }
+
+  @Override
+  void ensureCapacity(int capacity) {
+    if (capacity > _values.length) {
+      _values = Arrays.copyOf(_values, Math.max(capacity, _values.length + (_values.length >> 1)));
+    }
+  }
+
+  @Override
+  void shift(int from, int to) {
+    System.arraycopy(_values, from, _values, to, _size - from);
+  }
+
+  @Override
+  void release() {
+    _values = null;
+  }
+}
@@ -1,13 +1,18 @@
 package org.jschema.model;
 
 import gw.lang.reflect.IType;
+import org.jschema.typeloader.IJSchemaType;
+import org.jschema.util.JSchemaUtils;
 
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.function.BiConsumer;
 
 public class JsonMap<T> extends JsonObject implements Map<String, T> {
 
-  private Map<String, T> _backingMap;
+  private final Map<String, T> _backingMap;
+  private Map<String, Object> _changedSlots;
+  private Views<T> _views;
 
   public JsonMap() {
     this(null);
@@ -15,7 +20,202 @@ public class JsonMap<T> extends JsonObject implements Map<String, T> {
 
   public JsonMap(IType explicitType) {
     super(explicitType);
-    _backingMap = new LinkedHashMap<String, T>();
+    _backingMap = backingMapFor(explicitType);
+  }
+
+  /**
+   * Creates a map in a detached tree; see {@link JsonParentIndex}.
+   */
+  public JsonMap(IType explicitType, JsonParentIndex parentIndex) {
+    super(explicitType, parentIndex);
+    _backingMap = backingMapFor(explicitType);
+  }
+
+  private JsonMap(IType explicitType, JsonFrozenMap<T> frozenMap) {
+    super(explicitType);
+    _backingMap = frozenMap;
+  }
+
+  @Override
+  public JsonMap<T> freeze() {
+    return _backingMap instanceof JsonFrozenMap ? this : frozenCopy();
+  }
+
+  @Override
+  public JsonMap<T> snapshot() {
+    JsonMap<T> snapshot = pendingSnapshot();
+    startSnapshotEpoch();
+    return snapshot;
+  }
+
+  JsonMap<T> pendingSnapshot() {
+    if (isFrozen()) {
+      return this;
+    }
+    JsonMap<T> snapshot = (JsonMap<T>) getPendingSnapshot();
+    if (snapshot == null) {
+      JsonSnapshotMap<T> snapshotMap = new JsonSnapshotMap<T>(this);
+      snapshot = new JsonMap<T>(getExplicitType(), snapshotMap);
+      setPendingSnapshot(snapshot);
+    }
+    return snapshot;
+  }
+
+  private JsonMap(IType explicitType, JsonSnapshotMap<T> snapshotMap) {
+    super(explicitType);
+    _backingMap = snapshotMap;
+  }
+
+  @Override
+  void materializeSnapshot(JsonObject snapshot) {
+    ((JsonSnapshotMap) ((JsonMap) snapshot)._backingMap).materialize();
+  }
+
+  Map<String, T> getBackingMap() {
+    return _backingMap;
+  }
+
+  JsonMap<T> frozenCopy() {
+    return frozenCopy(getExplicitType(), _backingMap);
+  }
+
+  static <T> JsonMap<T> frozenCopy(IType explicitType, Map<?, ?> map) {
+    String[] keys = new String[map.size()];
+    Object[] values = new Object[keys.length];
+    int i = 0;
+    for (Map.Entry<?, ?> entry : map.entrySet()) {
+      keys[i] = (String) entry.getKey();
+      values[i++] = frozenCopyOf(entry.getValue());
+    }
+    JsonSlotLayout layout = map instanceof JsonSlotMap ? ((JsonSlotMap) map).getLayout() : null;
+    return new JsonMap<T>(explicitType, new JsonFrozenMap<T>(keys, values, layout));
+  }
+
+  @Override
+  public boolean isFrozen() {
+    return _backingMap instanceof JsonFrozenMap || _backingMap instanceof JsonSnapshotMap;
+  }
+
+  private static <T> Map<String, T> backingMapFor(IType explicitType) {
+    JsonSlotLayout layout = null;
+    if (explicitType instanceof IJSchemaType) {
+      layout = ((IJSchemaType) explicitType).getSlotLayout();
+    }
+    if (layout != null && layout.size() > 0) {
+      return new JsonSlotMap<T>(layout);
+    }
+    return new LinkedHashMap<String, T>();
+  }
+
+  /**
+   * @return the slot layout this map stores its values by, or null if it is a plain map.  Frozen
+   * copies and snapshots of a typed map keep its layout and can be read, but not written, by slot.
+   */
+  public JsonSlotLayout getSlotLayout() {
+    if (_backingMap instanceof JsonSlotMap) {
+      return ((JsonSlotMap) _backingMap).getLayout();
+    }
+    JsonFrozenMap<T> frozenMap = frozenMap();
+    return frozenMap != null ? frozenMap.getLayout() : null;
+  }
+
+  private JsonFrozenMap<T> frozenMap() {
+    if (_backingMap instanceof JsonFrozenMap) {
+      return (JsonFrozenMap<T>) _backingMap;
+    } else if (_backingMap instanceof JsonSnapshotMap) {
+      return ((JsonSnapshotMap<T>) _backingMap).copy();
+    }
+    return null;
+  }
+
+  /**
+   * Reads a slot by ordinal.  Only valid when {@link #getSlotLayout()} is not null.
+   */
+  public T getSlot(int ordinal) {
+    if (_backingMap instanceof JsonSlotMap) {
+      return ((JsonSlotMap<T>) _backingMap).getSlot(ordinal);
+    }
+    return frozenMap().getSlot(ordinal);
+  }
+
+  /**
+   * Writes a slot by ordinal.  Only valid when {@link #getSlotLayout()} is not null.
+   */
+  public T putSlot(int ordinal, T value) {
+    beforeChange();
+    JsonSlotMap<T> slotMap = (JsonSlotMap<T>) _backingMap;
+    T evicted = slotMap.putSlot(ordinal, value);
+    setThisAsParentFor(value);
+    nullParentIfNotSame(value, evicted);
+    slotChanged(slotMap.getLayout().getSlot(ordinal), evicted);
+    return evicted;
+  }
+
+  /**
+   * Writes a slot by ordinal without parent tracking for the new value, which must not be a
+   * JsonObject.  Only valid when {@link #getSlotLayout()} is not null.
+   */
+  public void putScalarSlot(int ordinal, T value) {
+    beforeChange();
+    JsonSlotMap<T> slotMap = (JsonSlotMap<T>) _backingMap;
+    T evicted = slotMap.putSlot(ordinal, value);
+    if (evicted instanceof JsonObject) {
+      setNullAsParentFor(evicted);
+    }
+    slotChanged(slotMap.getLayout().getSlot(ordinal), evicted);
+  }
+
+  /**
+   * Reads an int slot, or the epoch millis of a date slot, without boxing.
+   *
+   * @return the value, or the default if the slot is absent, null or not stored unboxed
+   */
+  public long getLongSlot(int ordinal, long defaultValue) {
+    if (_backingMap instanceof JsonSlotMap) {
+      return ((JsonSlotMap<T>) _backingMap).getPrimitiveSlot(ordinal, defaultValue);
+    }
+    Object value = frozenMap().getSlot(ordinal);
+    if (value instanceof Long) {
+      return (Long) value;
+    } else if (value instanceof Date) {
+      return ((Date) value).getTime();
+    }
+    return defaultValue;
+  }
+
+  public boolean getBooleanSlot(int ordinal, boolean defaultValue) {
+    if (_backingMap instanceof JsonSlotMap) {
+      long value = ((JsonSlotMap<T>) _backingMap).getPrimitiveSlot(ordinal, -1);
+      return value < 0 ? defaultValue : value != 0;
+    }
+    Object value = frozenMap().getSlot(ordinal);
+    return value instanceof Boolean ? (Boolean) value : defaultValue;
+  }
+
+  /**
+   * Writes an int slot, or the epoch millis of a date slot, without boxing.
+   */
+  public void putLongSlot(int ordinal, long value) {
+    int kind = getSlotLayout().getKind(ordinal);
+    if (kind != JsonSlotLayout.LONG_SLOT && kind != JsonSlotLayout.DATE_SLOT) {
+      throw new IllegalArgumentException("Slot " + getSlotLayout().getSlot(ordinal) + " is not an int or date slot");
+    }
+    putPrimitiveSlot(ordinal, value);
+  }
+
+  public void putBooleanSlot(int ordinal, boolean value) {
+    if (getSlotLayout().getKind(ordinal) != JsonSlotLayout.BOOLEAN_SLOT) {
+      throw new IllegalArgumentException("Slot " + getSlotLayout().getSlot(ordinal) + " is not a boolean slot");
+    }
+    putPrimitiveSlot(ordinal, value ? 1 : 0);
+  }
+
+  private void putPrimitiveSlot(int ordinal, long value) {
+    beforeChange();
+    JsonSlotMap<T> slotMap = (JsonSlotMap<T>) _backingMap;
+    Object evicted = slotMap.putPrimitiveSlot(ordinal, value);
+    setNullAsParentFor(evicted);
+    slotChanged(slotMap.getLayout().getSlot(ordinal), evicted);
   }
 
   @Override
@@ -75,14 +275,20 @@ public class JsonMap<T> extends JsonObject implements Map<String, T> {
 
   @Override
   public T put(String key, T value) {
+    beforeChange();
     T evicted = _backingMap.put(key, value);
     setThisAsParentFor(value);
     nullParentIfNotSame(value, evicted);
+    slotChanged(key, evicted);
     return evicted;
   }
 
   @Override
   public T remove(Object o) {
+    beforeChange();
+    if (_changedSlots != null && _backingMap.containsKey(o)) {
+      slotChanged((String) o, _backingMap.get(o));
+    }
     T remove = _backingMap.remove(o);
     setNullAsParentFor(remove);
     return remove;
@@ -98,35 +304,376 @@ public class JsonMap<T> extends JsonObject implements Map<String, T> {
 
   @Override
   public void clear() {
-    for (Object value : _backingMap.values()) {
-      setNullAsParentFor(value);
+    beforeChange();
+    for (Entry<String, T> entry : _backingMap.entrySet()) {
+      setNullAsParentFor(entry.getValue());
+      slotChanged(entry.getKey(), entry.getValue());
     }
     _backingMap.clear();
   }
 
+  private Views<T> views() {
+    if (_views == null) {
+      _views = new Views<T>();
+    }
+    return _views;
+  }
+
   @Override
   public Set<String> keySet() {
-    return (Set) new JsonSet(null, _backingMap.keySet()).withValueConverter(new ValueConverter() {
-      @Override
-      public Object convert(Object value) {
-        return JsonMap.this.get(value);
-      }
-    }).withRealOwner(getRealOwner());
+    // a frozen map's own views are read-only already and need no tracking
+    if (isFrozen()) {
+      return _backingMap.keySet();
+    }
+    Views<T> views = views();
+    if (views.keySet == null) {
+      views.keySet = new ViewSet<String>(_backingMap.keySet(), KEYS);
+    }
+    return views.keySet;
   }
 
   @Override
   public Collection<T> values() {
-    return (Collection<T>) new JsonCollection(null, _backingMap.values()).withRealOwner(getRealOwner());
+    if (isFrozen()) {
+      return _backingMap.values();
+    }
+    Views<T> views = views();
+    if (views.values == null) {
+      views.values = new ValuesView();
+    }
+    return views.values;
   }
 
+  /**
+   * While neither changes since a checkpoint nor snapshots are being tracked, iterating the entries
+   * hands out the backing map's own entries without wrapping them, so their setValue does not set
+   * the parent of a new child object; use put for that.
+   */
   @Override
   public Set<Entry<String, T>> entrySet() {
-    return (Set) new JsonSet(null, _backingMap.entrySet()).withValueConverter(new ValueConverter() {
-      @Override
-      public Object convert(Object value) {
-        return ((Map.Entry) value).getValue();
+    if (isFrozen()) {
+      return _backingMap.entrySet();
+    }
+    Views<T> views = views();
+    if (views.entrySet == null) {
+      views.entrySet = new ViewSet<Entry<String, T>>(_backingMap.entrySet(), ENTRIES);
+    }
+    return views.entrySet;
+  }
+
+  private boolean removeFromView(int kind, Object o) {
+    if (kind == KEYS) {
+      if (!_backingMap.containsKey(o)) {
+        return false;
+      }
+      remove(o);
+      return true;
+    }
+    if (kind == ENTRIES) {
+      if (!(o instanceof Map.Entry) || !_backingMap.entrySet().contains(o)) {
+        return false;
+      }
+      remove(((Map.Entry) o).getKey());
+      return true;
+    }
+    for (Iterator<Object> it = new ViewIterator(kind); it.hasNext(); ) {
+      Object value = it.next();
+      if (o == null ? value == null : o.equals(value)) {
+        it.remove();
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean removeAllFromView(int kind, Collection<?> objects, boolean retain) {
+    boolean changed = false;
+    for (Iterator<Object> it = new ViewIterator(kind); it.hasNext(); ) {
+      if (objects.contains(it.next()) != retain) {
+        it.remove();
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Read-only traversal straight over the backing map, without going through the views.
+   */
+  @Override
+  public void forEach(BiConsumer<? super String, ? super T> action) {
+    _backingMap.forEach(action);
+  }
+
+  @Override
+  protected void resetChanges() {
+    if (isFrozen()) {
+      return;
+    }
+    _changedSlots = new LinkedHashMap<String, Object>();
+  }
+
+  /**
+   * Records a changed slot.  The first change since the checkpoint also remembers the object the
+   * slot held then, so that a merge patch replacing that object can null out its dropped keys.
+   */
+  private void slotChanged(String key, Object previous) {
+    if (_changedSlots != null && !_changedSlots.containsKey(key)) {
+      _changedSlots.put(key, previous instanceof Map ? previous : null);
+    }
+  }
+
+  @Override
+  public boolean hasChanges() {
+    if (_changedSlots == null || !_changedSlots.isEmpty()) {
+      return true;
+    }
+    for (Object value : _backingMap.values()) {
+      if (value instanceof JsonObject && ((JsonObject) value).hasChanges()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return a JSON Merge Patch (RFC 7386) of the changes since the last checkpoint.  Removed slots
+   * appear as nulls, a replaced object nulls out the keys its replacement lacks, and changed lists
+   * are sent whole.  The patch shares its values with this map.
+   */
+  public Map<String, Object> createMergePatch() {
+    Map<String, Object> patch = new LinkedHashMap<String, Object>();
+    for (Entry<String, T> entry : _backingMap.entrySet()) {
+      String key = entry.getKey();
+      Object value = entry.getValue();
+      Object previous = _changedSlots == null ? null : _changedSlots.get(key);
+      // a child put back after being removed is still the receiver's object, so its own changes apply
+      boolean sameChild = previous != null && previous == value;
+      if (_changedSlots == null || (_changedSlots.containsKey(key) && !sameChild)) {
+        if (previous instanceof Map && value instanceof Map) {
+          patch.put(key, replacementPatch((Map<?, ?>) previous, (Map<?, ?>) value));
+        } else {
+          patch.put(key, value);
+        }
+      } else if (value instanceof JsonMap) {
+        Map<String, Object> childPatch = ((JsonMap) value).createMergePatch();
+        if (!childPatch.isEmpty()) {
+          patch.put(key, childPatch);
+        }
+      } else if (value instanceof JsonObject && ((JsonObject) value).hasChanges()) {
+        patch.put(key, value);
+      }
+    }
+    if (_changedSlots != null) {
+      for (String key : _changedSlots.keySet()) {
+        if (!_backingMap.containsKey(key)) {
+          patch.put(key, null);
+        }
+      }
+    }
+    return patch;
+  }
+
+  /**
+   * @return a merge patch that turns the given previous object into the value that replaced it.
+   * Merge patches merge into objects, so every key the replacement lacks is sent as a null.
+   */
+  private static Map<String, Object> replacementPatch(Map<?, ?> previous, Map<?, ?> value) {
+    Map<String, Object> patch = new LinkedHashMap<String, Object>();
+    for (Entry<?, ?> entry : value.entrySet()) {
+      Object previousValue = previous.get(entry.getKey());
+      Object newValue = entry.getValue();
+      if (previousValue instanceof Map && newValue instanceof Map) {
+        patch.put((String) entry.getKey(), replacementPatch((Map<?, ?>) previousValue, (Map<?, ?>) newValue));
+      } else {
+        patch.put((String) entry.getKey(), newValue);
+      }
+    }
+    for (Object key : previous.keySet()) {
+      if (!value.containsKey(key)) {
+        patch.put((String) key, null);
+      }
+    }
+    // keys removed from the previous object before it was replaced existed at the checkpoint too
+    if (previous instanceof JsonMap && ((JsonMap) previous)._changedSlots != null) {
+      for (Object key : ((JsonMap<?>) previous)._changedSlots.keySet()) {
+        if (!value.containsKey(key)) {
+          patch.put((String) key, null);
+        }
+      }
+    }
+    return patch;
+  }
+
+  /**
+   * @return a JSON Patch (RFC 6902) of the changes since the last checkpoint, as a list of
+   * add/remove operations.  The operations share their values with this map.
+   */
+  public List<Map<String, Object>> createJsonPatch() {
+    List<Map<String, Object>> operations = new ArrayList<Map<String, Object>>();
+    addJsonPatchOperations("", operations);
+    return operations;
+  }
+
+  private void addJsonPatchOperations(String path, List<Map<String, Object>> operations) {
+    for (Entry<String, T> entry : _backingMap.entrySet()) {
+      String key = entry.getKey();
+      Object value = entry.getValue();
+      String childPath = path + "/" + escapePointerToken(key);
+      if (_changedSlots == null || _changedSlots.containsKey(key)) {
+        operations.add(makeOperation("add", childPath, value));
+      } else if (value instanceof JsonMap) {
+        ((JsonMap) value).addJsonPatchOperations(childPath, operations);
+      } else if (value instanceof JsonObject && ((JsonObject) value).hasChanges()) {
+        operations.add(makeOperation("add", childPath, value));
+      }
+    }
+    if (_changedSlots != null) {
+      for (String key : _changedSlots.keySet()) {
+        if (!_backingMap.containsKey(key)) {
+          Map<String, Object> operation = new LinkedHashMap<String, Object>();
+          operation.put("op", "remove");
+          operation.put("path", path + "/" + escapePointerToken(key));
+          operations.add(operation);
+        }
+      }
+    }
+  }
+
+  private static Map<String, Object> makeOperation(String op, String path, Object value) {
+    Map<String, Object> operation = new LinkedHashMap<String, Object>();
+    operation.put("op", op);
+    operation.put("path", path);
+    operation.put("value", value);
+    return operation;
+  }
+
+  private static String escapePointerToken(String token) {
+    if (token.indexOf('~') < 0 && token.indexOf('/') < 0) {
+      return token;
+    }
+    return token.replace("~", "~0").replace("/", "~1");
+  }
+
+  private static String unescapePointerToken(String token) {
+    if (token.indexOf('~') < 0) {
+      return token;
+    }
+    return token.replace("~1", "/").replace("~0", "~");
+  }
+
+  /**
+   * @return the changes since the last checkpoint, serialized as a JSON Merge Patch
+   */
+  public String writeDelta() {
+    return JSchemaUtils.serializeJson(createMergePatch());
+  }
+
+  /**
+   * @return the changes since the last checkpoint, serialized as a JSON Patch
+   */
+  public String writeJsonPatch() {
+    return JSchemaUtils.serializeJson(createJsonPatch());
+  }
+
+  /**
+   * Applies a patch produced by {@link #writeDelta()} or {@link #writeJsonPatch()}.  Merge patches
+   * are parsed against this map's schema type, so dates, enums and nested objects come out typed.
+   */
+  public void applyPatch(String patch) {
+    String trimmed = patch.trim();
+    if (trimmed.startsWith("[")) {
+      applyPatch(JSchemaUtils.parseJson(trimmed));
+    } else {
+      IType explicitType = getExplicitType();
+      applyPatch(JSchemaUtils.parseJson(trimmed, explicitType instanceof IJSchemaType ? explicitType : null));
+    }
+  }
+
+  public void applyPatch(Object patch) {
+    if (patch instanceof Map) {
+      applyMergePatch((Map) patch);
+    } else if (patch instanceof List) {
+      for (Object operation : (List) patch) {
+        applyJsonPatchOperation((Map) operation);
+      }
+    } else {
+      throw new IllegalArgumentException("A patch must be either a JSON object or an array of operations, but found : " + patch);
+    }
+  }
+
+  private void applyMergePatch(Map<?, ?> patch) {
+    for (Entry<?, ?> entry : patch.entrySet()) {
+      String key = (String) entry.getKey();
+      Object value = entry.getValue();
+      if (value == null) {
+        remove(key);
+      } else if (value instanceof Map) {
+        Object current = _backingMap.get(key);
+        JsonMap target;
+        if (current instanceof JsonMap) {
+          target = (JsonMap) current;
+        } else {
+          target = new JsonMap(value instanceof JsonObject ? ((JsonObject) value).getExplicitType() : null);
+          put(key, (T) target);
+        }
+        target.applyMergePatch((Map) value);
+      } else {
+        put(key, (T) value);
+      }
+    }
+  }
+
+  private void applyJsonPatchOperation(Map operation) {
+    String op = (String) operation.get("op");
+    String path = (String) operation.get("path");
+    if (path == null || !path.startsWith("/")) {
+      throw new IllegalArgumentException("Bad JSON Patch path : " + path);
+    }
+    String[] tokens = path.substring(1).split("/", -1);
+    Object container = this;
+    for (int i = 0; i < tokens.length - 1; i++) {
+      container = getPointerChild(container, unescapePointerToken(tokens[i]), path);
+    }
+    String last = unescapePointerToken(tokens[tokens.length - 1]);
+    Object value = operation.get("value");
+    if (container instanceof Map) {
+      Map map = (Map) container;
+      if ("add".equals(op) || "replace".equals(op)) {
+        map.put(last, value);
+      } else if ("remove".equals(op)) {
+        map.remove(last);
+      } else {
+        throw new IllegalArgumentException("Unsupported JSON Patch operation : " + op);
       }
-    }).withRealOwner(getRealOwner());
+    } else if (container instanceof List) {
+      List list = (List) container;
+      if ("add".equals(op)) {
+        if ("-".equals(last)) {
+          list.add(value);
+        } else {
+          list.add(Integer.parseInt(last), value);
+        }
+      } else if ("replace".equals(op)) {
+        list.set(Integer.parseInt(last), value);
+      } else if ("remove".equals(op)) {
+        list.remove(Integer.parseInt(last));
+      } else {
+        throw new IllegalArgumentException("Unsupported JSON Patch operation : " + op);
+      }
+    } else {
+      throw new IllegalArgumentException("JSON Patch path does not exist : " + path);
+    }
+  }
+
+  private static Object getPointerChild(Object container, String token, String path) {
+    if (container instanceof Map) {
+      return ((Map) container).get(token);
+    } else if (container instanceof List) {
+      return ((List) container).get(Integer.parseInt(token));
+    } else {
+      throw new IllegalArgumentException("JSON Patch path does not exist : " + path);
+    }
   }
 
   @Override
@@ -147,4 +694,171 @@ public class JsonMap<T> extends JsonObject implements Map<String, T> {
   public String toString() {
     return _backingMap.toString();
   }
+
+  /**
+   * An entry of the entry set view, which writes through {@link #put(String, Object)} so that
+   * setValue is tracked like any other change.
+   */
+  private class OwnedEntry implements Entry<String, T> {
+    private final Entry<String, T> _entry;
+
+    private OwnedEntry(Entry<String, T> entry) {
+      _entry = entry;
+    }
+
+    @Override
+    public String getKey() {
+      return _entry.getKey();
+    }
+
+    @Override
+    public T getValue() {
+      return _entry.getValue();
+    }
+
+    @Override
+    public T setValue(T value) {
+      return put(_entry.getKey(), value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return _entry.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+      return _entry.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return _entry.toString();
+    }
+  }
+
+  private static final int KEYS = 0;
+  private static final int VALUES = 1;
+  private static final int ENTRIES = 2;
+
+  /**
+   * Walks the backing entries for a view.  Removals go through here rather than the backing
+   * views so that the removed key is recorded like {@link #remove(Object)} records it.
+   */
+  private class ViewIterator implements Iterator<Object> {
+    private final Iterator<Entry<String, T>> _entries = _backingMap.entrySet().iterator();
+    private final int _kind;
+    private Entry<String, T> _current;
+
+    private ViewIterator(int kind) {
+      _kind = kind;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return _entries.hasNext();
+    }
+
+    @Override
+    public Object next() {
+      _current = _entries.next();
+      if (_kind == KEYS) {
+        return _current.getKey();
+      }
+      if (_kind == VALUES) {
+        return _current.getValue();
+      }
+      if (_changedSlots == null && !hasPendingSnapshots()) {
+        return _current;
+      }
+      return new OwnedEntry(_current);
+    }
+
+    @Override
+    public void remove() {
+      if (_current == null) {
+        throw new IllegalStateException();
+      }
+      beforeChange();
+      String key = _current.getKey();
+      T value = _current.getValue();
+      _entries.remove();
+      _current = null;
+      setNullAsParentFor(value);
+      slotChanged(key, value);
+    }
+  }
+
+  private class ViewSet<E> extends JsonSet<E> {
+    private final int _kind;
+
+    private ViewSet(Set<E> backingSet, int kind) {
+      super(null, backingSet);
+      _kind = kind;
+      withRealOwner(JsonMap.this);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+      return (Iterator<E>) new ViewIterator(_kind);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+      return removeFromView(_kind, o);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> objects) {
+      return removeAllFromView(_kind, objects, false);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> objects) {
+      return removeAllFromView(_kind, objects, true);
+    }
+
+    @Override
+    public void clear() {
+      JsonMap.this.clear();
+    }
+  }
+
+  private class ValuesView extends JsonCollection<T> {
+    private ValuesView() {
+      super(null, _backingMap.values());
+      withRealOwner(JsonMap.this);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+      return (Iterator<T>) (Iterator) new ViewIterator(VALUES);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+      return removeFromView(VALUES, o);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> objects) {
+      return removeAllFromView(VALUES, objects, false);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> objects) {
+      return removeAllFromView(VALUES, objects, true);
+    }
+
+    @Override
+    public void clear() {
+      JsonMap.this.clear();
+    }
+  }
+
+  private static class Views<T> {
+    private Set<String> keySet;
+    private Collection<T> values;
+    private Set<Entry<String, T>> entrySet;
+  }
 }
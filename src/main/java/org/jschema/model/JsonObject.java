@@ -4,22 +4,50 @@ import gw.lang.reflect.IType;
 import gw.lang.reflect.TypeSystem;
 import gw.lang.reflect.gs.IGosuObject;
 import org.jschema.util.JSchemaUtils;
+import org.jschema.util.JsonContentHash;
 
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Date;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class JsonObject implements IGosuObject{
 
-  private IType _explicitType;
-  private JsonObject _parent;
-  private JsonObject _realOwner;
-  private ValueConverter _valueConverter;
+
+  private final IType _explicitType;
+  private Object _parent;
+  /*
+   * The state of this node's tree, null until something at or above this node is snapshotted or
+   * indexed.  Changes only look for type indexes to update among their ancestors while the tree has
+   * some.  A
+   * change only walks its ancestors while a snapshot in the tree is pending, and a node that has
+   * walked them once in the tree's current epoch does not walk them again unless it has a pending
+   * snapshot of its own: snapshots taken since then start a new epoch, and so does moving a node while
+   * snapshots are pending.
+   */
+  private JsonTreeState _tree;
+  private JsonTreeState.SnapshotRef _snapshot;
+  private int _separatedEpoch;
+  private volatile JsonTypeIndex _typeIndex;
 
   public JsonObject(IType explicitType) {
     _explicitType = explicitType;
-    _realOwner = this;
+  }
+
+  /**
+   * Creates a node of a detached tree, which finds its parent through the shared index rather than a
+   * parent pointer.
+   */
+  public JsonObject(IType explicitType, JsonParentIndex parentIndex) {
+    _explicitType = explicitType;
+    _parent = parentIndex;
+    parentIndex.register(this);
   }
 
   @Override
@@ -31,26 +59,332 @@ public class JsonObject implements IGosuObject{
     }
   }
 
-  public JsonObject withRealOwner(JsonObject realOwner) {
-    _realOwner = realOwner;
-    return this;
+  /**
+   * @return a deeply immutable copy of this object that can be shared between threads without
+   * synchronization, or this object if it is already frozen.  Modifying a frozen object, or a Date
+   * in it, throws UnsupportedOperationException.  Frozen objects can be shared by any number of trees,
+   * so they have no parent: {@link #getParent()} returns null for them and putting them into a map or
+   * list leaves them untouched.
+   */
+  public JsonObject freeze() {
+    throw new UnsupportedOperationException("Only maps and lists can be frozen");
   }
 
-  public JsonObject withValueConverter(ValueConverter valueConverter) {
-    _valueConverter = valueConverter;
-    return this;
+  public boolean isFrozen() {
+    return false;
+  }
+
+  static Object frozenCopyOf(Object value) {
+    if (value instanceof JsonMap) {
+      return ((JsonMap) value).frozenCopy();
+    } else if (value instanceof JsonList) {
+      return ((JsonList) value).frozenCopy();
+    } else if (value instanceof Map) {
+      return ((Map) value).isEmpty() ? Collections.EMPTY_MAP : JsonMap.frozenCopy(null, (Map<?, ?>) value);
+    } else if (value instanceof List) {
+      return ((List) value).isEmpty() ? Collections.EMPTY_LIST : JsonList.frozenCopy(null, (List<?>) value);
+    } else if (value instanceof Date && !(value instanceof JsonFrozenDate)) {
+      return new JsonFrozenDate(((Date) value).getTime());
+    }
+    return value;
+  }
+
+  /**
+   * @return an immutable copy of the current state of this object, made without copying anything up
+   * front.  Each map or list is copied one level deep, in time proportional to its size, when it or
+   * something below it is first edited, or when the snapshot is first read at that level.  The first
+   * snapshot of an object also walks the objects below it once, to share the bookkeeping with them.
+   * Unlike a frozen tree, a snapshot must not be read from another thread while this tree is being
+   * edited; freeze() it first for that.
+   */
+  public JsonObject snapshot() {
+    throw new UnsupportedOperationException("Only maps and lists can be snapshotted");
+  }
+
+  /**
+   * @return the snapshot of a child, taken while its parent's snapshot is copied
+   */
+  static Object snapshotOf(Object value) {
+    if (value instanceof JsonMap) {
+      return ((JsonMap) value).pendingSnapshot();
+    } else if (value instanceof JsonList) {
+      return ((JsonList) value).pendingSnapshot();
+    }
+    return frozenCopyOf(value);
+  }
+
+  /**
+   * Makes the ancestors walk of every node in this tree start over, after a snapshot was taken.
+   */
+  void startSnapshotEpoch() {
+    JsonTreeState tree = treeState();
+    if (tree != null) {
+      tree.startEpoch();
+    }
+  }
+
+  /**
+   * @return the state of this node's tree, or null if nothing at or above it was ever snapshotted
+   */
+  JsonTreeState treeState() {
+    JsonTreeState tree = _tree;
+    if (tree != null && tree.isMerged()) {
+      tree = tree.resolve();
+      _tree = tree;
+    }
+    return tree;
+  }
+
+  private JsonTreeState ensureTreeState() {
+    JsonTreeState tree = treeState();
+    if (tree == null) {
+      tree = new JsonTreeState();
+      shareTreeState(this, tree);
+    }
+    return tree;
   }
 
+  /**
+   * Gives a subtree the given tree state.  Nodes below one that has a state already have it as well,
+   * so the walk stops there, merging that state in.
+   */
+  private static void shareTreeState(JsonObject root, JsonTreeState tree) {
+    ArrayDeque<JsonObject> pending = new ArrayDeque<JsonObject>();
+    pending.push(root);
+    while (!pending.isEmpty()) {
+      JsonObject node = pending.pop();
+      JsonTreeState current = node.treeState();
+      if (current != null) {
+        if (current != tree) {
+          tree.merge(current);
+          node._tree = tree;
+        }
+        continue;
+      }
+      node._tree = tree;
+      for (Object child : childrenOf(node)) {
+        if (child instanceof JsonObject && !((JsonObject) child).isFrozen()) {
+          pending.push((JsonObject) child);
+        }
+      }
+    }
+  }
+
+  static Iterable<?> childrenOf(Object node) {
+    if (node instanceof Map) {
+      return ((Map<?, ?>) node).values();
+    } else if (node instanceof List) {
+      return (List<?>) node;
+    }
+    return Collections.emptyList();
+  }
+
+  /**
+   * @return true if a snapshot in this object's tree may still share state with it
+   */
+  boolean hasPendingSnapshots() {
+    JsonTreeState tree = treeState();
+    return tree != null && tree.hasPendingSnapshots();
+  }
+
+  JsonObject getPendingSnapshot() {
+    return _snapshot == null ? null : _snapshot.get();
+  }
+
+  void setPendingSnapshot(JsonObject snapshot) {
+    if (_snapshot != null) {
+      _snapshot.clear();
+      _snapshot = null;
+      treeState().snapshotReleased();
+    }
+    if (snapshot != null) {
+      _snapshot = ensureTreeState().newSnapshotRef(this, snapshot);
+      if (_parent instanceof JsonParentIndex) {
+        ((JsonParentIndex) _parent).markWatched();
+      }
+    }
+  }
+
+  /**
+   * Releases a pending snapshot that was garbage collected without being read.
+   */
+  void snapshotDropped(JsonTreeState.SnapshotRef snapshot) {
+    if (_snapshot == snapshot) {
+      _snapshot = null;
+      treeState().snapshotReleased();
+    }
+  }
+
+  /**
+   * Copies the current state of this object into its pending snapshot, so that it can be edited.
+   */
+  void materializeSnapshot(JsonObject snapshot) {
+  }
+
+  /**
+   * Must be called before every change to this object: rejects changes to frozen objects and
+   * separates this object and its ancestors from any snapshots that still share their state.
+   */
+  protected void beforeChange() {
+    JsonObject owner = getRealOwner();
+    if (owner.isFrozen()) {
+      throw new UnsupportedOperationException("Cannot modify a frozen JSON object");
+    }
+    JsonTreeState tree = owner.treeState();
+    if (tree != null && tree.hasPendingSnapshots()) {
+      int epoch = tree.getEpoch();
+      if (owner._separatedEpoch != epoch || owner._snapshot != null) {
+        owner.separateFromSnapshots();
+        owner._separatedEpoch = epoch;
+      }
+    }
+  }
+
+  private void separateFromSnapshots() {
+    JsonObject parent = nextAncestor();
+    if (parent != null) {
+      parent.separateFromSnapshots();
+      // separating a detached root snapshots the nodes skipped on the way up
+      JsonObject actualParent = nextAncestor();
+      if (actualParent != parent && actualParent != null) {
+        actualParent.separateFromSnapshots();
+      }
+    }
+    if (_snapshot != null) {
+      JsonObject snapshot = _snapshot.get();
+      if (snapshot != null) {
+        materializeSnapshot(snapshot);
+      } else {
+        setPendingSnapshot(null);
+      }
+    }
+  }
+
+  /**
+   * @return the parent, except within a detached tree that has never been snapshotted or indexed,
+   * where this goes straight to the tree's root, so that editing the tree does not build its parent
+   * index
+   */
+  private JsonObject nextAncestor() {
+    if (_parent instanceof JsonParentIndex) {
+      JsonParentIndex parentIndex = (JsonParentIndex) _parent;
+      if (parentIndex.isWatched()) {
+        return parentIndex.parentOf(this);
+      }
+      JsonObject root = parentIndex.getRoot();
+      return root != this ? root : null;
+    }
+    return (JsonObject) _parent;
+  }
+
+  /**
+   * Keeps an index from JSchema type to the objects of that type at or below this object, so that
+   * {@link #findDescendents(IType)} for a JSchema type costs O(results) rather than a walk of the
+   * tree.  The index is kept up to date as the tree is edited.  With the index enabled,
+   * findDescendents returns the objects in no particular order.
+   */
+  public void enableTypeIndex() {
+    if (_typeIndex == null) {
+      ensureTreeState().typeIndexAdded();
+      if (_parent instanceof JsonParentIndex) {
+        ((JsonParentIndex) _parent).markWatched();
+      }
+      JsonTypeIndex typeIndex = new JsonTypeIndex();
+      typeIndex.add(this);
+      _typeIndex = typeIndex;
+    }
+  }
+
+  /**
+   * Drops the index kept by {@link #enableTypeIndex()}.  Until every index in this tree is disabled,
+   * changes to it look for indexes to update among their ancestors.
+   */
+  public void disableTypeIndex() {
+    if (_typeIndex != null) {
+      _typeIndex = null;
+      treeState().typeIndexRemoved();
+    }
+  }
+
+  private boolean hasTypeIndexes() {
+    JsonTreeState tree = treeState();
+    return tree != null && tree.hasTypeIndexes();
+  }
+
+  private void addToTypeIndexes(JsonObject child) {
+    for (JsonObject ancestor = this; ancestor != null; ancestor = ancestor.nextAncestor()) {
+      if (ancestor._typeIndex != null) {
+        ancestor._typeIndex.add(child);
+      }
+    }
+  }
+
+  private void removeFromTypeIndexes(JsonObject child) {
+    for (JsonObject ancestor = this; ancestor != null; ancestor = ancestor.nextAncestor()) {
+      if (ancestor._typeIndex != null) {
+        ancestor._typeIndex.remove(child);
+      }
+    }
+  }
+
+  /**
+   * @return the map or list holding this object, or null for roots and for frozen objects and
+   * snapshots, which have no parent
+   */
   public JsonObject getParent() {
+    if (_parent instanceof JsonParentIndex) {
+      return ((JsonParentIndex) _parent).parentOf(this);
+    }
+    return (JsonObject) _parent;
+  }
+
+  Object getParentRef() {
     return _parent;
   }
 
+  void setParentRef(Object parent) {
+    _parent = parent;
+  }
+
+  /**
+   * @return the object whose contents this object is a view of, or this object itself
+   */
   protected JsonObject getRealOwner() {
-    return _realOwner;
+    return this;
+  }
+
+  protected Object convertValue(Object value) {
+    return value;
+  }
+
+  protected IType getExplicitType() {
+    return _explicitType;
+  }
+
+  /**
+   * Starts (or restarts) change tracking for this object and everything below it.  Changes made
+   * afterwards through put/add/remove/set can be sent with {@link JsonMap#writeDelta()}.
+   */
+  public void checkpoint() {
+    for (Object descendent : getDescendents()) {
+      if (descendent instanceof JsonObject) {
+        ((JsonObject) descendent).resetChanges();
+      }
+    }
+  }
+
+  protected void resetChanges() {
+  }
+
+  protected void markChanged() {
   }
 
-  protected ValueConverter getValueConverter() {
-    return _valueConverter;
+  /**
+   * @return true if this object or any of its descendents changed since the last checkpoint.  Objects
+   * that have never been checkpointed are considered changed.
+   */
+  public boolean hasChanges() {
+    return false;
   }
 
   protected void nullParentIfNotSame(Object value, Object evicted) {
@@ -62,61 +396,138 @@ public class JsonObject implements IGosuObject{
   protected void setNullAsParentFor(Object evicted) {
     evicted = convertValue(evicted);
     if (evicted instanceof JsonObject) {
-      JsonObject parent = ((JsonObject) evicted)._parent;
-      if (parent == _realOwner) {
-        ((JsonObject) evicted)._parent = null;
+      JsonObject owner = getRealOwner();
+      JsonObject child = (JsonObject) evicted;
+      if (child.isFrozen()) {
+        // frozen objects may be shared, so they are never re-parented
+        if (owner.hasTypeIndexes()) {
+          owner.removeFromTypeIndexes(child);
+        }
+      } else if (owner._parent instanceof JsonParentIndex) {
+        if (child._parent == owner._parent) {
+          if (owner.hasTypeIndexes()) {
+            owner.removeFromTypeIndexes(child);
+          }
+          ((JsonParentIndex) owner._parent).detach(child, owner);
+        }
+      } else if (child._parent == owner) {
+        if (owner.hasTypeIndexes()) {
+          owner.removeFromTypeIndexes(child);
+        }
+        child._parent = null;
       }
     }
   }
 
-  private Object convertValue(Object value) {
-    if (_valueConverter == null) {
-      return value;
-    } else {
-      return _valueConverter.convert(value);
-    }
-  }
-
   protected void setThisAsParentFor(Object jsonObj) {
     if (jsonObj instanceof JsonObject) {
-      ((JsonObject) jsonObj)._parent = _realOwner;
+      JsonObject owner = getRealOwner();
+      JsonObject child = (JsonObject) jsonObj;
+      // frozen objects may be shared, so they are never re-parented
+      if (!child.isFrozen()) {
+        JsonTreeState childTree = child.treeState();
+        if (childTree != null && childTree.hasPendingSnapshots()) {
+          if (child._parent != null && child._parent != owner && child._parent != owner._parent) {
+            // the child may still be reachable from a snapshot through its old parent
+            JsonObject oldParent = child.nextAncestor();
+            if (oldParent != null) {
+              oldParent.separateFromSnapshots();
+            }
+          }
+          childTree.startEpoch();
+        }
+        JsonTreeState tree = owner.treeState();
+        if (tree != null) {
+          if (tree != childTree) {
+            shareTreeState(child, tree);
+          }
+          if (tree.hasPendingSnapshots()) {
+            tree.startEpoch();
+          }
+        }
+        if (owner._parent instanceof JsonParentIndex) {
+          ((JsonParentIndex) owner._parent).attach(child, owner);
+        } else {
+          child._parent = owner;
+        }
+      }
+      if (owner.hasTypeIndexes()) {
+        owner.addToTypeIndexes(child);
+      }
     }
   }
 
+  /**
+   * @return this object and everything below it, in pre-order.  The tree is walked lazily as the
+   * result is iterated.
+   */
   public Iterable getDescendents() {
-    return findDescendents(this, new LinkedList(), null);
-  }
-
-  public Iterable findDescendents(IType type) {
-    return findDescendents(this, new LinkedList(), type);
+    return new Iterable() {
+      @Override
+      public Iterator iterator() {
+        return Spliterators.iterator(new JsonDescendentSpliterator(JsonObject.this));
+      }
+    };
   }
 
-  private static Iterable findDescendents(Object obj, List ll, IType type) {
-    if (type != null) {
-      if (type.isAssignableFrom(TypeSystem.getTypeFromObject(obj))) {
-        ll.add(obj);
-      }
-    } else {
-      ll.add(obj);
+  /**
+   * @return the objects at or below this object of the given type, in pre-order.  When a type index
+   * is enabled on this object, objects of a JSchema type come from the index instead, in no
+   * particular order.
+   */
+  public Iterable findDescendents(final IType type) {
+    if (_typeIndex != null && JsonTypeIndex.isIndexed(type)) {
+      return _typeIndex.find(type);
     }
-    if (obj instanceof List) {
-      for (Object o : ((List) obj)) {
-        findDescendents(o, ll, type);
+    return new Iterable() {
+      @Override
+      public Iterator iterator() {
+        return streamDescendents(type).iterator();
       }
+    };
+  }
+
+  /**
+   * @return a lazy stream of this object and everything below it, in pre-order.  The stream splits
+   * by subtree, so it can be made parallel for large trees.
+   */
+  public Stream<Object> streamDescendents() {
+    return StreamSupport.stream(new JsonDescendentSpliterator(this), false);
+  }
+
+  public Stream<Object> streamDescendents(final IType type) {
+    Stream<Object> descendents = streamDescendents();
+    if (type == null) {
+      return descendents;
     }
-    else if (obj instanceof Map)
-    {
-      for (Object o : ((Map) obj).values()) {
-        findDescendents(o, ll, type);
+    final boolean objectsOnly = JsonTypeIndex.isIndexed(type);
+    return descendents.filter(new Predicate<Object>() {
+      @Override
+      public boolean test(Object node) {
+        if (node instanceof JsonObject) {
+          return type.isAssignableFrom(((JsonObject) node).getIntrinsicType());
+        }
+        return !objectsOnly && node != null && type.isAssignableFrom(TypeSystem.getTypeFromObject(node));
       }
-    }
-    return ll;
+    });
   }
 
   public String write() {
     return JSchemaUtils.serializeJson(this);
   }
 
+  public byte[] writeBinary() {
+    return JSchemaUtils.serializeBinary(this);
+  }
+
+  public String writeCanonical() {
+    return JSchemaUtils.serializeCanonicalJson(this);
+  }
+
+  public long contentHash() {
+    return JsonContentHash.hash64(this);
+  }
+
   public String prettyPrint() {
     return JSchemaUtils.serializeJson(this, 2);
   }
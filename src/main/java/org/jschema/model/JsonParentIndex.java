@@ -0,0 +1,103 @@
+package org.jschema.model;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Parent lookup shared by the nodes of a detached tree.  Detached nodes point at this index instead of
+ * at their parent, so building the tree writes no parent pointers.  The parents are found by walking
+ * the tree from its root the first time one is asked for; after that, subtrees put into or removed
+ * from the tree are added to or dropped from the index as they go.
+ *
+ * The first node created with an index becomes its root.
+ */
+public final class JsonParentIndex {
+
+  private JsonObject _root;
+  private Map<JsonObject, JsonObject> _parents;
+  private boolean _watched;
+
+  void register(JsonObject node) {
+    if (_root == null) {
+      _root = node;
+    }
+  }
+
+  JsonObject getRoot() {
+    return _root;
+  }
+
+  void markWatched() {
+    _watched = true;
+  }
+
+  /**
+   * @return true if a node of this tree has been snapshotted or indexed, so that walks up the tree
+   * must visit every ancestor
+   */
+  boolean isWatched() {
+    return _watched;
+  }
+
+  JsonObject parentOf(JsonObject node) {
+    if (_parents == null) {
+      _parents = new IdentityHashMap<JsonObject, JsonObject>();
+      if (_root != null) {
+        index(_root);
+      }
+    }
+    return _parents.get(node);
+  }
+
+  /**
+   * Adds a subtree put into this tree under the given parent, taking it over from the detached tree
+   * it was in, if any.
+   */
+  void attach(JsonObject node, JsonObject parent) {
+    Object parentRef = node.getParentRef();
+    if (parentRef instanceof JsonParentIndex && parentRef != this) {
+      ((JsonParentIndex) parentRef).repoint(node, this);
+    } else if (parentRef != this) {
+      node.setParentRef(this);
+    }
+    if (_parents != null) {
+      _parents.put(node, parent);
+      index(node);
+    }
+  }
+
+  /**
+   * Moves a subtree removed from the given parent to a detached tree of its own, unless the index
+   * knows it to be in this tree under another parent.
+   */
+  void detach(JsonObject node, JsonObject parent) {
+    if (_parents != null && _parents.get(node) != parent) {
+      return;
+    }
+    JsonParentIndex parentIndex = new JsonParentIndex();
+    parentIndex._root = node;
+    parentIndex._watched = _watched;
+    repoint(node, parentIndex);
+  }
+
+  private void repoint(Object node, JsonParentIndex parentIndex) {
+    if (node instanceof JsonObject && ((JsonObject) node).getParentRef() == this) {
+      ((JsonObject) node).setParentRef(parentIndex);
+      if (_parents != null) {
+        _parents.remove(node);
+      }
+      for (Object child : JsonObject.childrenOf(node)) {
+        repoint(child, parentIndex);
+      }
+    }
+  }
+
+  private void index(JsonObject parent) {
+    for (Object child : JsonObject.childrenOf(parent)) {
+      if (child instanceof JsonObject && !_parents.containsKey(child)) {
+        _parents.put((JsonObject) child, parent);
+        index((JsonObject) child);
+      }
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package org.jschema.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Backing list for JsonLists of a primitive element type.  Elements are kept unboxed in growable
+ * primitive storage and boxed on read.  Once a value the storage can't hold (such as a null) is added,
+ * the list moves its elements to an ArrayList and stays boxed from then on.
+ */
+abstract class JsonPrimitiveStorage extends AbstractList<Object> implements RandomAccess {
+
+  private List<Object> _boxed;
+  int _size;
+
+  abstract boolean accepts(Object value);
+
+  abstract Object box(int i);
+
+  abstract void store(int i, Object value);
+
+  abstract void ensureCapacity(int capacity);
+
+  /**
+   * Moves the elements from index from to the end of the list so that they start at index to.
+   */
+  abstract void shift(int from, int to);
+
+  abstract void release();
+
+  boolean isBoxed() {
+    return _boxed != null;
+  }
+
+  private void switchToBoxed() {
+    List<Object> boxed = new ArrayList<Object>(Math.max(_size + (_size >> 1), 10));
+    for (int i = 0; i < _size; i++) {
+      boxed.add(box(i));
+    }
+    release();
+    _size = 0;
+    _boxed = boxed;
+  }
+
+  void checkIndex(int i) {
+    if (i < 0 || i >= _size) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + _size);
+    }
+  }
+
+  @Override
+  public int size() {
+    return _boxed != null ? _boxed.size() : _size;
+  }
+
+  @Override
+  public Object get(int i) {
+    if (_boxed != null) {
+      return _boxed.get(i);
+    }
+    checkIndex(i);
+    return box(i);
+  }
+
+  @Override
+  public Object set(int i, Object value) {
+    if (_boxed == null) {
+      checkIndex(i);
+      if (accepts(value)) {
+        Object evicted = box(i);
+        store(i, value);
+        return evicted;
+      }
+      switchToBoxed();
+    }
+    return _boxed.set(i, value);
+  }
+
+  @Override
+  public void add(int i, Object value) {
+    if (_boxed == null) {
+      if (i < 0 || i > _size) {
+        throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + _size);
+      }
+      if (accepts(value)) {
+        ensureCapacity(_size + 1);
+        if (i < _size) {
+          shift(i, i + 1);
+        }
+        _size++;
+        store(i, value);
+        modCount++;
+        return;
+      }
+      switchToBoxed();
+    }
+    _boxed.add(i, value);
+    modCount++;
+  }
+
+  @Override
+  public Object remove(int i) {
+    if (_boxed != null) {
+      modCount++;
+      return _boxed.remove(i);
+    }
+    checkIndex(i);
+    Object evicted = box(i);
+    if (i < _size - 1) {
+      shift(i + 1, i);
+    }
+    _size--;
+    modCount++;
+    return evicted;
+  }
+
+  @Override
+  public void clear() {
+    if (_boxed != null) {
+      _boxed.clear();
+    } else {
+      _size = 0;
+    }
+    modCount++;
+  }
+}
@@ -0,0 +1,83 @@
+package org.jschema.model;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The ordered JSON slots of a JSchema object type.  Maps of a type with a layout store their slot
+ * values in an array indexed by ordinal rather than in a hash map.  Slots declared as int or date are
+ * additionally kept unboxed in a long array, dates as epoch millis, and boolean slots in a bitset.
+ */
+public final class JsonSlotLayout {
+
+  public static final int OBJECT_SLOT = 0;
+  public static final int LONG_SLOT = 1;
+  public static final int BOOLEAN_SLOT = 2;
+  public static final int DATE_SLOT = 3;
+
+  private final String[] _slots;
+  private final Map<String, Integer> _ordinals;
+  private final int[] _kinds;
+  private final int[] _primitiveIndexes;
+  private final int _primitiveCount;
+  private final boolean _hasBooleans;
+
+  public JsonSlotLayout(List<String> slots) {
+    this(slots, null);
+  }
+
+  /**
+   * @param kinds the kind of each slot (OBJECT_SLOT, LONG_SLOT, BOOLEAN_SLOT or DATE_SLOT), or null if
+   *              all slots hold objects
+   */
+  public JsonSlotLayout(List<String> slots, int[] kinds) {
+    _slots = slots.toArray(new String[slots.size()]);
+    _ordinals = new HashMap<String, Integer>(slots.size() * 2);
+    for (int i = 0; i < _slots.length; i++) {
+      _ordinals.put(_slots[i], i);
+    }
+    _kinds = kinds == null ? new int[_slots.length] : kinds.clone();
+    _primitiveIndexes = new int[_slots.length];
+    int primitiveCount = 0;
+    boolean hasBooleans = false;
+    for (int i = 0; i < _kinds.length; i++) {
+      _primitiveIndexes[i] = _kinds[i] == LONG_SLOT || _kinds[i] == DATE_SLOT ? primitiveCount++ : -1;
+      hasBooleans |= _kinds[i] == BOOLEAN_SLOT;
+    }
+    _primitiveCount = primitiveCount;
+    _hasBooleans = hasBooleans;
+  }
+
+  public int size() {
+    return _slots.length;
+  }
+
+  /**
+   * @return the ordinal of the slot, or -1 if the layout does not declare it
+   */
+  public int getOrdinal(String slot) {
+    Integer ordinal = _ordinals.get(slot);
+    return ordinal == null ? -1 : ordinal;
+  }
+
+  public String getSlot(int ordinal) {
+    return _slots[ordinal];
+  }
+
+  public int getKind(int ordinal) {
+    return _kinds[ordinal];
+  }
+
+  int getPrimitiveIndex(int ordinal) {
+    return _primitiveIndexes[ordinal];
+  }
+
+  int getPrimitiveCount() {
+    return _primitiveCount;
+  }
+
+  boolean hasBooleans() {
+    return _hasBooleans;
+  }
+}
@@ -0,0 +1,466 @@
+package org.jschema.model;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Map storage for JSchema typed objects: declared slots live in an array indexed by the slot ordinal
+ * from the type's {@link JsonSlotLayout}, with a presence bit per slot so that explicit nulls are kept.
+ * Keys that the schema does not declare go to a small overflow map.  Iteration is in insertion order,
+ * like a LinkedHashMap's.  While keys are put in schema order, declared slots before overflow keys,
+ * that order is implied; an array of the order is only kept once a key is put out of it.
+ *
+ * Longs, Booleans and Dates put into int, boolean and date slots are stored unboxed and boxed again on
+ * read.  A date slot is read as a {@link JsonFrozenDate}, since changing a copy in place would be
+ * silently lost; Date subclasses other than that are stored as is.  Values of any other type are
+ * stored as is.
+ */
+class JsonSlotMap<T> extends AbstractMap<String, T> {
+
+  private final JsonSlotLayout _layout;
+  private final Object[] _values;
+  private final long[] _present;
+  private final long[] _primitives;
+  private final long[] _unboxed;
+  private final long[] _booleans;
+  private int _slotCount;
+  private int[] _order;
+  private Map<String, T> _overflow;
+  private Set<Entry<String, T>> _entrySet;
+
+  JsonSlotMap(JsonSlotLayout layout) {
+    _layout = layout;
+    _values = new Object[layout.size()];
+    _present = new long[(layout.size() + 63) >>> 6];
+    _primitives = layout.getPrimitiveCount() > 0 ? new long[layout.getPrimitiveCount()] : null;
+    _booleans = layout.hasBooleans() ? new long[_present.length] : null;
+    _unboxed = _primitives != null || _booleans != null ? new long[_present.length] : null;
+  }
+
+  JsonSlotLayout getLayout() {
+    return _layout;
+  }
+
+  boolean hasSlot(int ordinal) {
+    return (_present[ordinal >>> 6] & (1L << ordinal)) != 0;
+  }
+
+  private boolean isUnboxed(int ordinal) {
+    return _unboxed != null && (_unboxed[ordinal >>> 6] & (1L << ordinal)) != 0;
+  }
+
+  T getSlot(int ordinal) {
+    if (isUnboxed(ordinal)) {
+      return (T) box(ordinal);
+    }
+    return (T) _values[ordinal];
+  }
+
+  private Object box(int ordinal) {
+    long bits = unboxedValue(ordinal);
+    switch (_layout.getKind(ordinal)) {
+      case JsonSlotLayout.BOOLEAN_SLOT:
+        return Boolean.valueOf(bits != 0);
+      case JsonSlotLayout.DATE_SLOT:
+        return new JsonFrozenDate(bits);
+      default:
+        return Long.valueOf(bits);
+    }
+  }
+
+  private long unboxedValue(int ordinal) {
+    if (_layout.getKind(ordinal) == JsonSlotLayout.BOOLEAN_SLOT) {
+      return (_booleans[ordinal >>> 6] >>> ordinal) & 1;
+    }
+    return _primitives[_layout.getPrimitiveIndex(ordinal)];
+  }
+
+  /**
+   * @return the unboxed value of an int, boolean (1 or 0) or date (epoch millis) slot, or the
+   * default if the slot is absent or holds something else
+   */
+  long getPrimitiveSlot(int ordinal, long defaultValue) {
+    if (isUnboxed(ordinal)) {
+      return unboxedValue(ordinal);
+    }
+    Object value = _values[ordinal];
+    if (value instanceof Date && _layout.getKind(ordinal) == JsonSlotLayout.DATE_SLOT) {
+      return ((Date) value).getTime();
+    }
+    return defaultValue;
+  }
+
+  T putSlot(int ordinal, T value) {
+    T evicted = hasSlot(ordinal) ? getSlot(ordinal) : null;
+    int kind = _layout.getKind(ordinal);
+    if (kind == JsonSlotLayout.LONG_SLOT && value instanceof Long) {
+      storeUnboxed(ordinal, (Long) value);
+    } else if (kind == JsonSlotLayout.BOOLEAN_SLOT && value instanceof Boolean) {
+      storeUnboxed(ordinal, ((Boolean) value) ? 1 : 0);
+    } else if (kind == JsonSlotLayout.DATE_SLOT && value != null &&
+               (value.getClass() == Date.class || value.getClass() == JsonFrozenDate.class)) {
+      storeUnboxed(ordinal, ((Date) value).getTime());
+    } else {
+      _values[ordinal] = value;
+      if (_unboxed != null) {
+        _unboxed[ordinal >>> 6] &= ~(1L << ordinal);
+      }
+      markPresent(ordinal);
+    }
+    return evicted;
+  }
+
+  /**
+   * Stores the unboxed value of an int, boolean (1 or 0) or date (epoch millis) slot.
+   *
+   * @return the object previously held in the slot if it was not stored unboxed, else null
+   */
+  Object putPrimitiveSlot(int ordinal, long value) {
+    Object evicted = isUnboxed(ordinal) ? null : _values[ordinal];
+    storeUnboxed(ordinal, value);
+    return evicted;
+  }
+
+  private void storeUnboxed(int ordinal, long value) {
+    if (_layout.getKind(ordinal) == JsonSlotLayout.BOOLEAN_SLOT) {
+      if (value != 0) {
+        _booleans[ordinal >>> 6] |= 1L << ordinal;
+      } else {
+        _booleans[ordinal >>> 6] &= ~(1L << ordinal);
+      }
+    } else {
+      _primitives[_layout.getPrimitiveIndex(ordinal)] = value;
+    }
+    _values[ordinal] = null;
+    _unboxed[ordinal >>> 6] |= 1L << ordinal;
+    markPresent(ordinal);
+  }
+
+  private void markPresent(int ordinal) {
+    if (!hasSlot(ordinal)) {
+      if (_order != null || !isLast(ordinal)) {
+        appendToOrder(ordinal);
+      }
+      _present[ordinal >>> 6] |= 1L << ordinal;
+      _slotCount++;
+    }
+  }
+
+  T removeSlot(int ordinal) {
+    if (!hasSlot(ordinal)) {
+      return null;
+    }
+    T evicted = getSlot(ordinal);
+    if (_order != null) {
+      removeFromOrder(indexInOrder(ordinal, 0));
+    }
+    _values[ordinal] = null;
+    _present[ordinal >>> 6] &= ~(1L << ordinal);
+    if (_unboxed != null) {
+      _unboxed[ordinal >>> 6] &= ~(1L << ordinal);
+    }
+    _slotCount--;
+    return evicted;
+  }
+
+  /**
+   * @return true if a slot added now would come last in the implied order: after every present slot
+   * and with no overflow keys
+   */
+  private boolean isLast(int ordinal) {
+    if (_overflow != null && !_overflow.isEmpty()) {
+      return false;
+    }
+    int word = ordinal >>> 6;
+    if ((_present[word] & (-1L << ordinal) & ~(1L << ordinal)) != 0) {
+      return false;
+    }
+    for (int i = word + 1; i < _present.length; i++) {
+      if (_present[i] != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Adds a slot ordinal, or -1 for an overflow key, to the end of the order, first spelling out the
+   * implied order if it is not kept yet.  Called before the entry is counted.
+   */
+  private void appendToOrder(int entry) {
+    int count = size();
+    if (_order == null) {
+      _order = new int[Math.max(count + 1, 4)];
+      int i = 0;
+      for (int ordinal = 0; ordinal < _values.length; ordinal++) {
+        if (hasSlot(ordinal)) {
+          _order[i++] = ordinal;
+        }
+      }
+      while (i < count) {
+        _order[i++] = -1;
+      }
+    } else if (count == _order.length) {
+      _order = Arrays.copyOf(_order, count * 2);
+    }
+    _order[count] = entry;
+  }
+
+  private int indexInOrder(int entry, int occurrence) {
+    for (int i = 0; ; i++) {
+      if (_order[i] == entry && occurrence-- == 0) {
+        return i;
+      }
+    }
+  }
+
+  /**
+   * Called before the entry is uncounted.
+   */
+  private void removeFromOrder(int index) {
+    System.arraycopy(_order, index + 1, _order, index, size() - index - 1);
+  }
+
+  private int ordinalOf(Object key) {
+    return key instanceof String ? _layout.getOrdinal((String) key) : -1;
+  }
+
+  @Override
+  public int size() {
+    return _overflow == null ? _slotCount : _slotCount + _overflow.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    int ordinal = ordinalOf(key);
+    if (ordinal >= 0) {
+      return hasSlot(ordinal);
+    }
+    return _overflow != null && _overflow.containsKey(key);
+  }
+
+  @Override
+  public T get(Object key) {
+    int ordinal = ordinalOf(key);
+    if (ordinal >= 0) {
+      return getSlot(ordinal);
+    }
+    return _overflow == null ? null : _overflow.get(key);
+  }
+
+  @Override
+  public T put(String key, T value) {
+    int ordinal = _layout.getOrdinal(key);
+    if (ordinal >= 0) {
+      return putSlot(ordinal, value);
+    }
+    if (_overflow == null) {
+      _overflow = new LinkedHashMap<String, T>(4);
+    }
+    if (_order != null && !_overflow.containsKey(key)) {
+      appendToOrder(-1);
+    }
+    return _overflow.put(key, value);
+  }
+
+  @Override
+  public T remove(Object key) {
+    int ordinal = ordinalOf(key);
+    if (ordinal >= 0) {
+      return removeSlot(ordinal);
+    }
+    if (_overflow == null || !_overflow.containsKey(key)) {
+      return null;
+    }
+    if (_order != null) {
+      // overflow keys are kept in order by the overflow map, so the key's marker is the one whose
+      // place among the markers is the key's place among the overflow keys
+      int occurrence = 0;
+      for (String overflowKey : _overflow.keySet()) {
+        if (overflowKey.equals(key)) {
+          break;
+        }
+        occurrence++;
+      }
+      removeFromOrder(indexInOrder(-1, occurrence));
+    }
+    return _overflow.remove(key);
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(_values, null);
+    Arrays.fill(_present, 0);
+    if (_unboxed != null) {
+      Arrays.fill(_unboxed, 0);
+    }
+    _slotCount = 0;
+    _overflow = null;
+    _order = null;
+  }
+
+  @Override
+  public Set<Entry<String, T>> entrySet() {
+    if (_entrySet == null) {
+      _entrySet = new AbstractSet<Entry<String, T>>() {
+        @Override
+        public Iterator<Entry<String, T>> iterator() {
+          return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+          return JsonSlotMap.this.size();
+        }
+      };
+    }
+    return _entrySet;
+  }
+
+  @Override
+  public void forEach(BiConsumer<? super String, ? super T> action) {
+    if (_order != null) {
+      Iterator<Entry<String, T>> overflow = _overflow == null ? null : _overflow.entrySet().iterator();
+      for (int i = 0, count = size(); i < count; i++) {
+        int ordinal = _order[i];
+        if (ordinal >= 0) {
+          action.accept(_layout.getSlot(ordinal), getSlot(ordinal));
+        } else {
+          Entry<String, T> entry = overflow.next();
+          action.accept(entry.getKey(), entry.getValue());
+        }
+      }
+      return;
+    }
+    for (int i = 0; i < _values.length; i++) {
+      if (hasSlot(i)) {
+        action.accept(_layout.getSlot(i), getSlot(i));
+      }
+    }
+    if (_overflow != null) {
+      _overflow.forEach(action);
+    }
+  }
+
+  private class EntryIterator implements Iterator<Entry<String, T>> {
+    private final boolean _ordered = _order != null;
+    private int _next = _ordered ? 0 : nextPresent(0);
+    private int _last = -1;
+    private boolean _lastInOverflow;
+    private Iterator<Entry<String, T>> _overflowIterator;
+
+    private int nextPresent(int from) {
+      for (int i = from; i < _values.length; i++) {
+        if (hasSlot(i)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private Iterator<Entry<String, T>> overflowIterator() {
+      if (_overflowIterator == null) {
+        _overflowIterator = _overflow.entrySet().iterator();
+      }
+      return _overflowIterator;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (_ordered) {
+        return _next < size();
+      }
+      if (_next >= 0) {
+        return true;
+      }
+      return _overflow != null && overflowIterator().hasNext();
+    }
+
+    @Override
+    public Entry<String, T> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      if (_ordered) {
+        int ordinal = _order[_next++];
+        _lastInOverflow = ordinal < 0;
+        _last = _lastInOverflow ? -1 : ordinal;
+        return _lastInOverflow ? overflowIterator().next() : new SlotEntry(ordinal);
+      }
+      if (_next >= 0) {
+        _last = _next;
+        _next = nextPresent(_next + 1);
+        return new SlotEntry(_last);
+      }
+      _last = -1;
+      _lastInOverflow = true;
+      return overflowIterator().next();
+    }
+
+    @Override
+    public void remove() {
+      if (_last >= 0) {
+        removeSlot(_last);
+        _last = -1;
+      } else if (_lastInOverflow) {
+        if (_ordered) {
+          removeFromOrder(_next - 1);
+        }
+        _overflowIterator.remove();
+        _lastInOverflow = false;
+      } else {
+        throw new IllegalStateException();
+      }
+      if (_ordered) {
+        _next--;
+      }
+    }
+  }
+
+  private class SlotEntry implements Entry<String, T> {
+    private final int _ordinal;
+
+    private SlotEntry(int ordinal) {
+      _ordinal = ordinal;
+    }
+
+    @Override
+    public String getKey() {
+      return _layout.getSlot(_ordinal);
+    }
+
+    @Override
+    public T getValue() {
+      return getSlot(_ordinal);
+    }
+
+    @Override
+    public T setValue(T value) {
+      return putSlot(_ordinal, value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Entry)) {
+        return false;
+      }
+      Entry e = (Entry) o;
+      return getKey().equals(e.getKey()) && (getValue() == null ? e.getValue() == null : getValue().equals(e.getValue()));
+    }
+
+    @Override
+    public int hashCode() {
+      return getKey().hashCode() ^ (getValue() == null ? 0 : getValue().hashCode());
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + "=" + getValue();
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package org.jschema.model;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Storage of a snapshot JsonList.  Until it is first read, or its source is about to change, it only
+ * refers to the source list; then it copies the source's elements, replacing child maps and lists by
+ * their own (equally lazy) snapshots.
+ */
+class JsonSnapshotList extends AbstractList<Object> implements RandomAccess {
+
+  private JsonList<?> _source;
+  private JsonFrozenList _copy;
+
+  JsonSnapshotList(JsonList<?> source) {
+    _source = source;
+  }
+
+  void materialize() {
+    if (_copy != null) {
+      return;
+    }
+    List<?> sourceList = _source._backingList;
+    long[] longs = sourceList instanceof JsonLongStorage ? ((JsonLongStorage) sourceList).toLongArray() : null;
+    if (longs != null) {
+      _copy = new JsonFrozenList(longs);
+    } else {
+      Object[] values = new Object[sourceList.size()];
+      int i = 0;
+      for (Object value : sourceList) {
+        values[i++] = JsonObject.snapshotOf(value);
+      }
+      _copy = new JsonFrozenList(values);
+    }
+    _source.setPendingSnapshot(null);
+    _source = null;
+  }
+
+  private JsonFrozenList copy() {
+    materialize();
+    return _copy;
+  }
+
+  long getLong(int i) {
+    return copy().getLong(i);
+  }
+
+  @Override
+  public Object get(int i) {
+    return copy().get(i);
+  }
+
+  @Override
+  public int size() {
+    return copy().size();
+  }
+
+  @Override
+  public int hashCode() {
+    return copy().hashCode();
+  }
+}
@@ -0,0 +1,73 @@
+package org.jschema.model;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Storage of a snapshot JsonMap.  Until it is first read, or its source is about to change, it only
+ * refers to the source map; then it copies the source's entries, replacing child maps and lists by
+ * their own (equally lazy) snapshots.
+ */
+class JsonSnapshotMap<T> extends AbstractMap<String, T> {
+
+  private JsonMap<T> _source;
+  private JsonFrozenMap<T> _copy;
+
+  JsonSnapshotMap(JsonMap<T> source) {
+    _source = source;
+  }
+
+  void materialize() {
+    if (_copy != null) {
+      return;
+    }
+    Map<String, T> sourceMap = _source.getBackingMap();
+    String[] keys = new String[sourceMap.size()];
+    Object[] values = new Object[keys.length];
+    int i = 0;
+    for (Entry<String, T> entry : sourceMap.entrySet()) {
+      keys[i] = entry.getKey();
+      values[i++] = JsonObject.snapshotOf(entry.getValue());
+    }
+    _copy = new JsonFrozenMap<T>(keys, values, _source.getSlotLayout());
+    _source.setPendingSnapshot(null);
+    _source = null;
+  }
+
+  JsonFrozenMap<T> copy() {
+    materialize();
+    return _copy;
+  }
+
+  @Override
+  public int size() {
+    return copy().size();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return copy().containsKey(key);
+  }
+
+  @Override
+  public T get(Object key) {
+    return copy().get(key);
+  }
+
+  @Override
+  public void forEach(BiConsumer<? super String, ? super T> action) {
+    copy().forEach(action);
+  }
+
+  @Override
+  public int hashCode() {
+    return copy().hashCode();
+  }
+
+  @Override
+  public Set<Entry<String, T>> entrySet() {
+    return copy().entrySet();
+  }
+}
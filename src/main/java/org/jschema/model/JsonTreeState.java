@@ -0,0 +1,127 @@
+package org.jschema.model;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bookkeeping shared by the nodes of one tree: the snapshots still pending in it, the epoch that tells
+ * a node whether it has to walk its ancestors before a change, and the number of type indexes in it.
+ * A tree only gets one when a node in it is first snapshotted or indexed, and the nodes below that
+ * node share it, as does everything later put below them.  Joining two trees that have one merges
+ * them.  Like the trees, it is not thread-safe.
+ */
+final class JsonTreeState {
+
+  private final ReferenceQueue<JsonObject> _droppedSnapshots = new ReferenceQueue<JsonObject>();
+  private JsonTreeState _mergedInto;
+  private List<JsonTreeState> _merged;
+  private int _pendingSnapshots;
+  private int _epoch = 1;
+  private int _typeIndexes;
+
+  /**
+   * @return the state this one was merged into, or this state
+   */
+  JsonTreeState resolve() {
+    JsonTreeState state = this;
+    while (state._mergedInto != null) {
+      state = state._mergedInto;
+    }
+    if (_mergedInto != null) {
+      _mergedInto = state;
+    }
+    return state;
+  }
+
+  boolean isMerged() {
+    return _mergedInto != null;
+  }
+
+  /**
+   * Merges the state of a tree joined to this one.  Its nodes may have walked their ancestors in an
+   * epoch of their own, so a new epoch starts that neither tree has seen.
+   */
+  void merge(JsonTreeState other) {
+    other._mergedInto = this;
+    if (_merged == null) {
+      _merged = new ArrayList<JsonTreeState>(2);
+    }
+    _merged.add(other);
+    _pendingSnapshots += other._pendingSnapshots;
+    _typeIndexes += other._typeIndexes;
+    _epoch = Math.max(_epoch, other._epoch) + 1;
+  }
+
+  int getEpoch() {
+    return _epoch;
+  }
+
+  /**
+   * Makes every node walk its ancestors again before its next change, as needed when a snapshot is
+   * taken or a node is moved while snapshots are pending.
+   */
+  void startEpoch() {
+    _epoch++;
+  }
+
+  /**
+   * @return true if a snapshot in this tree still shares state with it.  Snapshots that were dropped
+   * without ever being read are released here.
+   */
+  boolean hasPendingSnapshots() {
+    if (_pendingSnapshots > 0) {
+      releaseDroppedSnapshots(this);
+    }
+    return _pendingSnapshots > 0;
+  }
+
+  SnapshotRef newSnapshotRef(JsonObject source, JsonObject snapshot) {
+    _pendingSnapshots++;
+    return new SnapshotRef(source, snapshot, _droppedSnapshots);
+  }
+
+  void snapshotReleased() {
+    _pendingSnapshots--;
+  }
+
+  boolean hasTypeIndexes() {
+    return _typeIndexes > 0;
+  }
+
+  void typeIndexAdded() {
+    _typeIndexes++;
+  }
+
+  void typeIndexRemoved() {
+    _typeIndexes--;
+  }
+
+  private static void releaseDroppedSnapshots(JsonTreeState state) {
+    Reference<? extends JsonObject> dropped;
+    while ((dropped = state._droppedSnapshots.poll()) != null) {
+      SnapshotRef ref = (SnapshotRef) dropped;
+      ref._source.snapshotDropped(ref);
+    }
+    if (state._merged != null) {
+      for (JsonTreeState merged : state._merged) {
+        releaseDroppedSnapshots(merged);
+      }
+    }
+  }
+
+  /**
+   * The pending snapshot of a node, held weakly so that a snapshot nobody refers to any more stops
+   * costing its source anything.
+   */
+  static final class SnapshotRef extends WeakReference<JsonObject> {
+    private final JsonObject _source;
+
+    private SnapshotRef(JsonObject source, JsonObject snapshot, ReferenceQueue<JsonObject> queue) {
+      super(snapshot, queue);
+      _source = source;
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package org.jschema.model;
+
+import gw.lang.reflect.IEnumType;
+import gw.lang.reflect.IType;
+import org.jschema.typeloader.IJSchemaType;
+
+import java.util.*;
+
+/**
+ * The objects of each JSchema type in a subtree, see {@link JsonObject#enableTypeIndex()}.
+ */
+class JsonTypeIndex {
+
+  private final Map<IType, Set<JsonObject>> _objectsByType = new HashMap<IType, Set<JsonObject>>();
+
+  /**
+   * @return true if objects of the type are JsonObjects, so that the index can answer queries for it
+   */
+  static boolean isIndexed(IType type) {
+    return type instanceof IJSchemaType && !(type instanceof IEnumType);
+  }
+
+  void add(Object node) {
+    if (node instanceof JsonObject) {
+      IType type = ((JsonObject) node).getExplicitType();
+      if (isIndexed(type)) {
+        Set<JsonObject> objects = _objectsByType.get(type);
+        if (objects == null) {
+          objects = Collections.newSetFromMap(new IdentityHashMap<JsonObject, Boolean>());
+          _objectsByType.put(type, objects);
+        }
+        objects.add((JsonObject) node);
+      }
+      for (Object child : JsonObject.childrenOf(node)) {
+        add(child);
+      }
+    }
+  }
+
+  void remove(Object node) {
+    if (node instanceof JsonObject) {
+      Set<JsonObject> objects = _objectsByType.get(((JsonObject) node).getExplicitType());
+      if (objects != null) {
+        objects.remove(node);
+      }
+      for (Object child : JsonObject.childrenOf(node)) {
+        remove(child);
+      }
+    }
+  }
+
+  List<JsonObject> find(IType type) {
+    Set<JsonObject> exact = _objectsByType.get(type);
+    List<JsonObject> found = new ArrayList<JsonObject>(exact == null ? 0 : exact.size());
+    for (Map.Entry<IType, Set<JsonObject>> entry : _objectsByType.entrySet()) {
+      if (entry.getKey() == type || type.isAssignableFrom(entry.getKey())) {
+        found.addAll(entry.getValue());
+      }
+    }
+    return found;
+  }
+}
@@ -7,6 +7,7 @@ import gw.lang.reflect.TypeSystem;
 import gw.lang.reflect.java.JavaTypes;
 import org.jschema.model.JsonList;
 import org.jschema.model.JsonMap;
+import org.jschema.model.JsonParentIndex;
 import org.jschema.typeloader.IJSchemaType;
 import org.jschema.util.JSchemaUtils;
 
@@ -21,6 +22,7 @@ public class JSONParser {
   protected IType _currentType;
   protected List<JsonParseError> _errors = new ArrayList<JsonParseError>();
   private Object _retVal;
+  private JsonParentIndex _parentIndex;
 
   public JSONParser(String json, IType rootType) {
     _currentToken = JSONToken.tokenize(json).removeTokens(JSONTokenType.COMMENT);
@@ -33,6 +35,15 @@ public class JSONParser {
     return;
   }
 
+  /**
+   * Produces a detached tree: the parsed nodes find their parents through a shared
+   * {@link JsonParentIndex}, built only if a parent is asked for, instead of parent pointers.
+   */
+  public JSONParser withDetachedParents() {
+    _parentIndex = new JsonParentIndex();
+    return this;
+  }
+
   /**
    * Parses a complete JSON document, which must start either an object ('{') or an array ('[')
    *
@@ -140,7 +151,7 @@ public class JSONParser {
   }
 
   private Date parseDate() {
-    if (JavaTypes.DATE().equals(_currentType)) {
+    if (_currentType != null && JavaTypes.DATE().equals(_currentType)) {
       String s = parseString();
       if (s != null) {
         return JSchemaUtils.parseDate(s);
@@ -150,7 +161,7 @@ public class JSONParser {
   }
 
   private URI parseURI() {
-    if (TypeSystem.get(URI.class).equals(_currentType)) {
+    if (_currentType != null && TypeSystem.get(URI.class).equals(_currentType)) {
       String s = parseString();
       URI uri = null;
       if (s != null) {
@@ -190,7 +201,7 @@ public class JSONParser {
     if (_currentToken.isNumber()) {
       String value = _currentToken.getValue();
       consumeToken();
-      if (value.contains(".") || value.contains("e") || value.contains("E") || JavaTypes.BIG_DECIMAL().equals(_currentType)) {
+      if (value.contains(".") || value.contains("e") || value.contains("E") || (_currentType != null && JavaTypes.BIG_DECIMAL().equals(_currentType))) {
         if (leadingNegative) {
           return new BigDecimal("-" + value);
         } else {
@@ -260,7 +271,7 @@ public class JSONParser {
       if (match("]")) {
         return Collections.EMPTY_LIST;
       } else {
-        List lst = new JsonList(_currentType);
+        List lst = _parentIndex == null ? new JsonList(_currentType) : new JsonList(_currentType, _parentIndex);
         IType lstType = _currentType;
         try {
           if (lstType != null) {
@@ -289,7 +300,7 @@ public class JSONParser {
       if (match("}")) {
         return Collections.EMPTY_MAP;
       } else {
-        JsonMap map = new JsonMap(_currentType);
+        JsonMap map = _parentIndex == null ? new JsonMap(_currentType) : new JsonMap(_currentType, _parentIndex);
 
         IType ctxType = _currentType;
 
@@ -2,6 +2,7 @@ package org.jschema.typeloader;
 
 import gw.lang.parser.IHasInnerClass;
 import gw.lang.reflect.IType;
+import org.jschema.model.JsonSlotLayout;
 
 import java.util.Map;
 
@@ -9,6 +10,8 @@ public interface IJSchemaType extends IType, IHasInnerClass {
 
   public void addInnerClass(IType innerClass);
 
+  public void removeInnerClass(IType innerClass);
+
   Map<String, String> getTypeDefs();
 
   IType getSelfType();
@@ -18,4 +21,10 @@ public interface IJSchemaType extends IType, IHasInnerClass {
   IType getTypeForJsonSlot(String key);
 
   String getJsonSlotForPropertyName(String propName);
+
+  int getJsonSlotOrdinal(String key);
+
+  String getJsonSlotForOrdinal(int ordinal);
+
+  JsonSlotLayout getSlotLayout();
 }
@@ -0,0 +1,124 @@
+package org.jschema.typeloader;
+
+import gw.lang.reflect.IType;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memoized results of the structural assignability checks between JSchema types of one type loader,
+ * keyed by the two type instances, since the type compared against may come from another loader
+ * with the same name.  Cleared whenever the loader's types are refreshed.  The type compared against
+ * is held weakly, so that a type another loader has since refreshed away is not kept reachable.
+ */
+class JSchemaAssignabilityCache {
+
+  private final ConcurrentHashMap<Object, Boolean> _results = new ConcurrentHashMap<Object, Boolean>();
+  private final ReferenceQueue<IType> _clearedTypes = new ReferenceQueue<IType>();
+
+  /**
+   * @return whether the first type was found assignable from the second, or null if not known
+   */
+  Boolean get(IType toType, IType fromType) {
+    return _results.get(new Pair(toType, fromType));
+  }
+
+  /**
+   * @param toType a type of this cache's loader
+   */
+  void put(IType toType, IType fromType, boolean assignable) {
+    put(new Pair(toType, fromType), assignable);
+  }
+
+  void put(Pair pair, boolean assignable) {
+    removeClearedPairs();
+    _results.put(new WeakPair(pair, _clearedTypes), assignable);
+  }
+
+  void clear() {
+    _results.clear();
+    removeClearedPairs();
+  }
+
+  private void removeClearedPairs() {
+    Reference<? extends IType> cleared;
+    while ((cleared = _clearedTypes.poll()) != null) {
+      _results.remove(cleared);
+    }
+  }
+
+  /**
+   * Two types compared by identity.
+   */
+  static class Pair {
+    private final IType _toType;
+    private final IType _fromType;
+
+    Pair(IType toType, IType fromType) {
+      _toType = toType;
+      _fromType = fromType;
+    }
+
+    IType getToType() {
+      return _toType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o instanceof WeakPair) {
+        return o.equals(this);
+      }
+      if (!(o instanceof Pair)) {
+        return false;
+      }
+      Pair that = (Pair) o;
+      return _toType == that._toType && _fromType == that._fromType;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash(_toType, _fromType);
+    }
+  }
+
+  /**
+   * A pair as stored in the cache, equal to the Pair it was made from for as long as the type
+   * compared against is reachable.
+   */
+  private static final class WeakPair extends WeakReference<IType> {
+    private final IType _toType;
+    private final int _hash;
+
+    private WeakPair(Pair pair, ReferenceQueue<IType> queue) {
+      super(pair._fromType, queue);
+      _toType = pair._toType;
+      _hash = pair.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o == this) {
+        return true;
+      }
+      IType fromType = get();
+      if (fromType == null) {
+        return false;
+      }
+      if (o instanceof Pair) {
+        return _toType == ((Pair) o)._toType && fromType == ((Pair) o)._fromType;
+      }
+      return o instanceof WeakPair && _toType == ((WeakPair) o)._toType && fromType == ((WeakPair) o).get();
+    }
+
+    @Override
+    public int hashCode() {
+      return _hash;
+    }
+  }
+
+  private static int hash(IType toType, IType fromType) {
+    return 31 * System.identityHashCode(toType) + System.identityHashCode(fromType);
+  }
+}
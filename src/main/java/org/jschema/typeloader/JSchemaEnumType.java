@@ -4,13 +4,14 @@ import gw.fs.IFile;
 import gw.lang.reflect.*;
 import gw.lang.reflect.gs.IGosuObject;
 import org.jschema.util.JSchemaUtils;
-import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
 import java.util.*;
 
 public class JSchemaEnumType extends JSchemaType implements IJSchemaEnumType {
 
   private List<IEnumValue> values = new ArrayList<IEnumValue>();
+  private Map<String, IEnumValue> valuesByCode = new HashMap<String, IEnumValue>();
+  private Set<Object> rawValues = new HashSet<Object>();
 
   public JSchemaEnumType(String name, ITypeLoader typeloader, final Object object, IFile f) {
     super(name, typeloader, object, new HashMap<String, String>(), f);
@@ -19,7 +20,12 @@ public class JSchemaEnumType extends JSchemaType implements IJSchemaEnumType {
       throw new RuntimeException("An enum must be an array of values.");
     }
     for (Object o : (List) obj) {
-      values.add(new JsonEnumValue((String)o));
+      JsonEnumValue value = new JsonEnumValue((String) o, values.size());
+      values.add(value);
+      if (!valuesByCode.containsKey(value.getCode())) {
+        valuesByCode.put(value.getCode(), value);
+      }
+      rawValues.add(value.getValue());
     }
   }
 
@@ -35,12 +41,7 @@ public class JSchemaEnumType extends JSchemaType implements IJSchemaEnumType {
 
   @Override
   public IEnumValue getEnumValue( String strName ) {
-    for (IEnumValue value : values) {
-      if (value.getCode().equals(strName)) {
-        return value;
-      }
-    }
-    return null;
+    return valuesByCode.get(strName);
   }
 
   @Override
@@ -67,35 +68,37 @@ public class JSchemaEnumType extends JSchemaType implements IJSchemaEnumType {
 
   private boolean isEquivalentEnum(IType type) {
     if (type instanceof IJSchemaEnumType) {
-      IJSchemaEnumType otherEnum = (IJSchemaEnumType) type;
-      List<IEnumValue> otherValues = otherEnum.getEnumValues();
-      for (IEnumValue otherValue : otherValues) {
-        if (!hasValue(otherValue.getValue())) {
-          return false;
+      ITypeLoader loader = getTypeLoader();
+      JSchemaAssignabilityCache cache = loader instanceof JSchemaTypeLoader ? ((JSchemaTypeLoader) loader).getEnumEquivalenceCache() : null;
+      Boolean cached = cache == null ? null : cache.get(this, type);
+      if (cached != null) {
+        return cached;
+      }
+      boolean result = true;
+      for (IEnumValue otherValue : ((IJSchemaEnumType) type).getEnumValues()) {
+        if (!rawValues.contains(otherValue.getValue())) {
+          result = false;
+          break;
         }
       }
-      return true;
+      if (cache != null) {
+        cache.put(this, type, result);
+      }
+      return result;
     } else {
       return false;
     }
   }
 
-  private boolean hasValue(Object value) {
-    for (IEnumValue iEnumValue : values) {
-      if (value.equals(iEnumValue.getValue())) {
-        return true;
-      }
-    }
-    return false;
-  }
-
   public class JsonEnumValue implements IEnumValue, IGosuObject {
     public String code;
     public String displayName;
     public String originalValue;
+    public int ordinal;
 
-    public JsonEnumValue(String value) {
+    public JsonEnumValue(String value, int ordinal) {
       originalValue = value;
+      this.ordinal = ordinal;
       code = JSchemaEnumType.enumify(value);
       displayName = code;
     }
@@ -112,7 +115,7 @@ public class JSchemaEnumType extends JSchemaType implements IJSchemaEnumType {
 
     @Override
     public int getOrdinal() {
-      throw new NotImplementedException();
+      return ordinal;
     }
 
     @Override
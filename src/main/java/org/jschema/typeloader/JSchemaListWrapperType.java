@@ -8,6 +8,7 @@ import org.jschema.model.JsonList;
 
 import java.util.Collections;
 import java.util.Map;
+import org.jschema.model.JsonSlotLayout;
 
 public class JSchemaListWrapperType extends JSchemaTypeBase implements IJsonType {
 
@@ -36,6 +37,21 @@ public class JSchemaListWrapperType extends JSchemaTypeBase implements IJsonType
     return getTypeInfo().getJsonSlotForPropertyName(propName);
   }
 
+  @Override
+  public int getJsonSlotOrdinal(String key) {
+    return getTypeInfo().getJsonSlotOrdinal(key);
+  }
+
+  @Override
+  public String getJsonSlotForOrdinal(int ordinal) {
+    return getTypeInfo().getJsonSlotForOrdinal(ordinal);
+  }
+
+  @Override
+  public JsonSlotLayout getSlotLayout() {
+    return getTypeInfo().getSlotLayout();
+  }
+
   @Override
   public JSchemaTypeInfo getTypeInfo() {
     return (JSchemaTypeInfo) super.getTypeInfo();
@@ -0,0 +1,136 @@
+package org.jschema.typeloader;
+
+import org.jschema.model.JsonList;
+import org.jschema.model.JsonMap;
+import org.jschema.parser.JsonParseError;
+import org.jschema.util.JsonBinaryReader;
+import org.jschema.util.JsonBinaryWriter;
+import org.jschema.util.JsonContentHash;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An on-disk cache of parsed schema files, so that unchanged files are not parsed again on a warm start.
+ * Each schema file has its own entry in the binary JSON format: a header with the file's path, a hash
+ * of its text and its parse errors, followed by the parsed (and for .json files, converted) schema.
+ * The types built from a schema are derived from it, so they need no entries of their own.
+ *
+ * Enabled by setting the jschema.cache.dir system property to the directory to keep the cache in.
+ */
+class JSchemaMetadataCache {
+
+  static final String CACHE_DIR_PROPERTY = "jschema.cache.dir";
+
+  private static final long VERSION = 1;
+  private static final Logger LOGGER = Logger.getLogger(JSchemaMetadataCache.class.getName());
+
+  private final File _dir;
+
+  JSchemaMetadataCache(File dir) {
+    _dir = dir;
+  }
+
+  /**
+   * @return the cache configured by the jschema.cache.dir system property, or null if there is none
+   */
+  static JSchemaMetadataCache fromSystemProperties() {
+    String dir = System.getProperty(CACHE_DIR_PROPERTY);
+    return dir == null || dir.isEmpty() ? null : new JSchemaMetadataCache(new File(dir));
+  }
+
+  static class Entry {
+    final Object content;
+    final List<JsonParseError> errors;
+
+    Entry(Object content, List<JsonParseError> errors) {
+      this.content = content;
+      this.errors = errors;
+    }
+  }
+
+  /**
+   * @return the cached schema for the file, or null if there is none for this text
+   */
+  Entry read(String path, String text) {
+    File file = entryFile(path);
+    if (!file.isFile()) {
+      return null;
+    }
+    try {
+      JsonBinaryReader reader = new JsonBinaryReader(Files.readAllBytes(file.toPath()));
+      Object header = reader.read(null);
+      if (!(header instanceof JsonMap)) {
+        return null;
+      }
+      JsonMap entry = (JsonMap) header;
+      if (!Long.valueOf(VERSION).equals(entry.get("version")) ||
+        !path.equals(entry.get("path")) ||
+        !Long.valueOf(JsonContentHash.hash64(text)).equals(entry.get("hash"))) {
+        return null;
+      }
+      List<JsonParseError> errors = null;
+      if (entry.get("errors") != null) {
+        errors = new ArrayList<JsonParseError>();
+        for (Object error : (List) entry.get("errors")) {
+          List values = (List) error;
+          errors.add(new JsonParseError((String) values.get(0), ((Number) values.get(1)).intValue(), ((Number) values.get(2)).intValue()));
+        }
+      }
+      return new Entry(reader.read(null), errors);
+    } catch (IOException e) {
+      LOGGER.log(Level.FINE, "Unable to read schema cache entry " + file, e);
+    } catch (RuntimeException e) {
+      LOGGER.log(Level.FINE, "Ignoring bad schema cache entry " + file, e);
+    }
+    return null;
+  }
+
+  void write(String path, String text, Object content, List<JsonParseError> errors) {
+    JsonMap entry = new JsonMap();
+    entry.put("version", VERSION);
+    entry.put("path", path);
+    entry.put("hash", JsonContentHash.hash64(text));
+    if (errors != null) {
+      JsonList errorList = new JsonList();
+      for (JsonParseError error : errors) {
+        JsonList values = new JsonList();
+        values.add(error.getMessage());
+        values.add((long) error.getStart());
+        values.add((long) error.getEnd());
+        errorList.add(values);
+      }
+      entry.put("errors", errorList);
+    }
+    File file = entryFile(path);
+    File temp = null;
+    boolean moved = false;
+    try {
+      JsonBinaryWriter writer = new JsonBinaryWriter();
+      writer.write(entry, null);
+      writer.write(content, null);
+      byte[] bytes = writer.toByteArray();
+      Files.createDirectories(_dir.toPath());
+      temp = File.createTempFile(file.getName(), ".tmp", _dir);
+      Files.write(temp.toPath(), bytes);
+      Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      moved = true;
+    } catch (IOException e) {
+      LOGGER.log(Level.FINE, "Unable to write schema cache entry " + file, e);
+    } finally {
+      if (temp != null && !moved) {
+        temp.delete();
+      }
+    }
+  }
+
+  private File entryFile(String path) {
+    return new File(_dir, Long.toHexString(JsonContentHash.hash64(path)) + ".jsc");
+  }
+}
@@ -0,0 +1,158 @@
+package org.jschema.typeloader;
+
+import gw.fs.IDirectory;
+import gw.fs.IFile;
+import org.jschema.model.JsonList;
+import org.jschema.model.JsonMap;
+import org.jschema.parser.JsonParseError;
+import org.jschema.util.JsonBinaryReader;
+import org.jschema.util.JsonBinaryWriter;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The parsed schema files of a module, written into its jar at build time by the jschema maven plugin.
+ * When there are indexes on a module's class path, {@link JSchemaTypeLoader} takes its types from them
+ * and never walks or parses the schema files in the module's source path.  Each schema is kept in the
+ * binary JSON format and decoded the first time one of its types is requested.
+ *
+ * Set the jschema.precompiled system property to false to ignore indexes on the class path.  Set the
+ * jschema.dev system property to true to also read the source path, whose files then win over the
+ * indexes so that schemas being edited are not hidden by a stale jar.
+ */
+public class JSchemaPrecompiledIndex {
+
+  public static final String RESOURCE_NAME = "META-INF/jschema/index.bin";
+  public static final String ENABLED_PROPERTY = "jschema.precompiled";
+  public static final String DEV_MODE_PROPERTY = "jschema.dev";
+
+  private static final long VERSION = 1;
+
+  private final Map<String, byte[]> _schemas = new LinkedHashMap<String, byte[]>();
+
+  /**
+   * Parses a schema file and adds it to the index, unless it has errors.
+   *
+   * @param relativePath the path of the file relative to its source directory, using / as the separator
+   * @return the parse errors, empty if the file was added
+   * @throws IllegalArgumentException if the file is not a .jschema or .json file in a package
+   */
+  public List<JsonParseError> addFile(String relativePath, String text) {
+    String extension = JSchemaTypeLoader.extensionOf(relativePath);
+    if (extension == null) {
+      throw new IllegalArgumentException(relativePath + " is not a JSchema or JSON file");
+    }
+    String rootTypeName = JSchemaTypeLoader.rootTypeNameFor(relativePath, extension);
+    if (rootTypeName == null) {
+      throw new IllegalArgumentException("Cannot have Simple JSON Schema definitions in the default package : " + relativePath);
+    }
+    JSchemaMetadataCache.Entry parsed = JSchemaTypeLoader.parseSchema(text, JSchemaTypeLoader.JSON_EXT.equals(extension));
+    if (parsed.errors != null && !parsed.errors.isEmpty()) {
+      return parsed.errors;
+    }
+    _schemas.put(rootTypeName, JsonBinaryWriter.serialize(parsed.content, null));
+    return Collections.emptyList();
+  }
+
+  public Set<String> getRootTypeNames() {
+    return Collections.unmodifiableSet(_schemas.keySet());
+  }
+
+  /**
+   * Writes the index: a header listing each root type name and the length of its schema, followed by
+   * the schemas.
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    JsonList types = new JsonList();
+    for (Map.Entry<String, byte[]> schema : _schemas.entrySet()) {
+      JsonList type = new JsonList();
+      type.add(schema.getKey());
+      type.add((long) schema.getValue().length);
+      types.add(type);
+    }
+    JsonMap header = new JsonMap();
+    header.put("version", VERSION);
+    header.put("types", types);
+    byte[] headerBytes = JsonBinaryWriter.serialize(header, null);
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(headerBytes.length);
+    data.write(headerBytes);
+    for (byte[] schema : _schemas.values()) {
+      data.write(schema);
+    }
+    data.flush();
+  }
+
+  public static JSchemaPrecompiledIndex read(InputStream in) throws IOException {
+    DataInputStream data = new DataInputStream(in);
+    byte[] headerBytes = new byte[data.readInt()];
+    data.readFully(headerBytes);
+    Object header = JsonBinaryReader.parse(headerBytes, null);
+    if (!(header instanceof Map) || !Long.valueOf(VERSION).equals(((Map) header).get("version"))) {
+      throw new IOException("Unsupported precompiled JSchema index");
+    }
+    JSchemaPrecompiledIndex index = new JSchemaPrecompiledIndex();
+    for (Object type : (List) ((Map) header).get("types")) {
+      List nameAndLength = (List) type;
+      byte[] schema = new byte[((Number) nameAndLength.get(1)).intValue()];
+      data.readFully(schema);
+      index._schemas.put((String) nameAndLength.get(0), schema);
+    }
+    return index;
+  }
+
+  /**
+   * Merges the indexes in a module's class path roots, directories or jars.  Where two declare the
+   * same root type, the first one wins.
+   *
+   * @return the merged index, or null if there are no indexes or they are disabled
+   */
+  static JSchemaPrecompiledIndex load(List<IDirectory> classPath) {
+    if ("false".equals(System.getProperty(ENABLED_PROPERTY)) || classPath == null) {
+      return null;
+    }
+    JSchemaPrecompiledIndex merged = null;
+    for (IDirectory root : classPath) {
+      IFile resource = root.file(RESOURCE_NAME);
+      if (resource == null || !resource.exists()) {
+        continue;
+      }
+      try {
+        InputStream in = new BufferedInputStream(resource.openInputStream());
+        try {
+          JSchemaPrecompiledIndex index = read(in);
+          if (merged == null) {
+            merged = index;
+          } else {
+            for (Map.Entry<String, byte[]> schema : index._schemas.entrySet()) {
+              if (!merged._schemas.containsKey(schema.getKey())) {
+                merged._schemas.put(schema.getKey(), schema.getValue());
+              }
+            }
+          }
+        } finally {
+          in.close();
+        }
+      } catch (IOException e) {
+        throw new RuntimeException("Unable to read precompiled JSchema index " + resource.getPath().getPathString(), e);
+      }
+    }
+    return merged;
+  }
+
+  /**
+   * @return true if the source path is read even when there are indexes
+   */
+  static boolean isDevMode() {
+    return Boolean.getBoolean(DEV_MODE_PROPERTY);
+  }
+
+  Map<String, byte[]> getSchemas() {
+    return _schemas;
+  }
+
+  static Object decode(byte[] schema) {
+    return JsonBinaryReader.parse(schema, null);
+  }
+}
@@ -3,8 +3,8 @@ package org.jschema.typeloader;
 import gw.fs.IFile;
 import gw.lang.reflect.*;
 
-import java.util.HashSet;
-import java.util.Map;
+import java.util.*;
+import org.jschema.model.JsonSlotLayout;
 
 public class JSchemaType extends JSchemaTypeBase implements IJsonType {
 
@@ -33,6 +33,21 @@ public class JSchemaType extends JSchemaTypeBase implements IJsonType {
     return getTypeInfo().getJsonSlotForPropertyName(propName);
   }
 
+  @Override
+  public int getJsonSlotOrdinal(String key) {
+    return getTypeInfo().getJsonSlotOrdinal(key);
+  }
+
+  @Override
+  public String getJsonSlotForOrdinal(int ordinal) {
+    return getTypeInfo().getJsonSlotForOrdinal(ordinal);
+  }
+
+  @Override
+  public JsonSlotLayout getSlotLayout() {
+    return getTypeInfo().getSlotLayout();
+  }
+
   @Override
   public JSchemaTypeInfo getTypeInfo() {
     return (JSchemaTypeInfo) super.getTypeInfo();
@@ -58,41 +73,75 @@ public class JSchemaType extends JSchemaTypeBase implements IJsonType {
     }
   }
 
-  ThreadLocal<HashSet<IType>> activeComparisonsThreadLocal = new ThreadLocal<HashSet<IType>>();
-  private boolean hasSamePropsAsMe(IType type) {
-    if (type instanceof IJSchemaType) {
-
-      boolean instantiatedThreadLocalSet = false;
-      try {
-        HashSet<IType> activeComparisons = activeComparisonsThreadLocal.get();
-        if (activeComparisons == null) {
-          instantiatedThreadLocalSet = true;
-          activeComparisons = new HashSet<IType>();
-          activeComparisonsThreadLocal.set(activeComparisons);
-        } else if (activeComparisons.contains(type)) {
-          return true;
-        }
+  /**
+   * The comparisons in progress on this thread, which are assumed to hold so that recursive types
+   * terminate, and the comparisons found to hold under that assumption.  Those are only known to
+   * hold once the outermost comparison does.
+   */
+  private static class Comparisons {
+    private final Set<JSchemaAssignabilityCache.Pair> inProgress = new HashSet<JSchemaAssignabilityCache.Pair>();
+    private final List<JSchemaAssignabilityCache.Pair> assumedTrue = new ArrayList<JSchemaAssignabilityCache.Pair>();
+  }
 
-        activeComparisons.add(type);
+  private static final ThreadLocal<Comparisons> ACTIVE_COMPARISONS = new ThreadLocal<Comparisons>() {
+    @Override
+    protected Comparisons initialValue() {
+      return new Comparisons();
+    }
+  };
 
-        for (IPropertyInfo pi : getTypeInfo().getProperties()) {
-          IPropertyInfo property = type.getTypeInfo().getProperty(pi.getName());
-          if (property == null) {
-            return false;
-          }
-          if (!pi.getFeatureType().isAssignableFrom(property.getFeatureType())) {
-            return false;
-          }
+  JSchemaAssignabilityCache getAssignabilityCache() {
+    ITypeLoader loader = getTypeLoader();
+    return loader instanceof JSchemaTypeLoader ? ((JSchemaTypeLoader) loader).getAssignabilityCache() : null;
+  }
+
+  private boolean hasSamePropsAsMe(IType type) {
+    if (!(type instanceof IJSchemaType)) {
+      return false;
+    }
+    JSchemaAssignabilityCache cache = getAssignabilityCache();
+    Boolean cached = cache == null ? null : cache.get(this, type);
+    if (cached != null) {
+      return cached;
+    }
+
+    Comparisons comparisons = ACTIVE_COMPARISONS.get();
+    JSchemaAssignabilityCache.Pair key = new JSchemaAssignabilityCache.Pair(this, type);
+    if (!comparisons.inProgress.add(key)) {
+      return true;
+    }
+    boolean outermost = comparisons.inProgress.size() == 1;
+    boolean result = true;
+    try {
+      for (IPropertyInfo pi : getTypeInfo().getProperties()) {
+        IPropertyInfo property = type.getTypeInfo().getProperty(pi.getName());
+        if (property == null || !pi.getFeatureType().isAssignableFrom(property.getFeatureType())) {
+          result = false;
+          break;
         }
-      } finally {
-        if (instantiatedThreadLocalSet) {
-          activeComparisonsThreadLocal.set(null);
+      }
+      if (cache != null) {
+        if (!result) {
+          cache.put(key, false);
+        } else if (!outermost) {
+          comparisons.assumedTrue.add(key);
+        } else {
+          cache.put(key, true);
+          for (JSchemaAssignabilityCache.Pair pair : comparisons.assumedTrue) {
+            // a nested comparison may have been made by a type of another loader, whose cache it goes to
+            JSchemaAssignabilityCache pairCache = ((JSchemaType) pair.getToType()).getAssignabilityCache();
+            if (pairCache != null) {
+              pairCache.put(pair, true);
+            }
+          }
         }
       }
-
-      return true;
-    } else {
-      return false;
+    } finally {
+      comparisons.inProgress.remove(key);
+      if (outermost) {
+        comparisons.assumedTrue.clear();
+      }
     }
+    return result;
   }
 }
@@ -8,11 +8,13 @@ import gw.util.GosuClassUtil;
 import gw.util.concurrent.LockingLazyVar;
 import org.jschema.model.JsonList;
 import org.jschema.model.JsonMap;
+import org.jschema.model.JsonSlotLayout;
 import org.jschema.parser.JsonParseError;
 import org.jschema.util.JSchemaUtils;
 
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 public abstract class JSchemaTypeBase extends TypeBase implements IJSchemaType, IProvidesCustomErrorInfo, IFileBasedType {
@@ -52,7 +54,7 @@ public abstract class JSchemaTypeBase extends TypeBase implements IJSchemaType,
       }
     };
     this.file = file;
-    _innerClasses = new HashMap<String, IType>();
+    _innerClasses = new ConcurrentHashMap<String, IType>();
     _errors = new ArrayList<CustomErrorInfo>();
   }
 
@@ -67,6 +69,12 @@ public abstract class JSchemaTypeBase extends TypeBase implements IJSchemaType,
     _innerClasses.put(innerClass.getRelativeName(), innerClass);
   }
 
+  public void removeInnerClass(IType innerClass) {
+    if (_innerClasses.get(innerClass.getRelativeName()) == innerClass) {
+      _innerClasses.remove(innerClass.getRelativeName());
+    }
+  }
+
   @Override
   public List<? extends IType> getInnerClasses() {
     return new ArrayList<IType>(_innerClasses.values());
@@ -114,6 +122,18 @@ public abstract class JSchemaTypeBase extends TypeBase implements IJSchemaType,
     return null;
   }
 
+  public int getJsonSlotOrdinal(String key) {
+    return -1;
+  }
+
+  public String getJsonSlotForOrdinal(int ordinal) {
+    return null;
+  }
+
+  public JsonSlotLayout getSlotLayout() {
+    return null;
+  }
+
   @Override
   public String getName() {
     return fullName;
@@ -166,7 +186,7 @@ public abstract class JSchemaTypeBase extends TypeBase implements IJSchemaType,
   @Override
   public IFile[] getSourceFiles()
   {
-    return new IFile[]{file};
+    return file == null ? new IFile[0] : new IFile[]{file};
   }
 
   public void addErrors(List<JsonParseError> errors) {
@@ -10,6 +10,7 @@ import gw.util.concurrent.LockingLazyVar;
 import org.jschema.model.JsonList;
 import org.jschema.model.JsonMap;
 import org.jschema.model.JsonObject;
+import org.jschema.model.JsonSlotLayout;
 import org.jschema.util.SimpleRPCCallHandler;
 import org.jschema.util.JSchemaUtils;
 
@@ -21,9 +22,11 @@ public class JSchemaTypeInfo extends TypeInfoBase {
 
   private IJSchemaType owner;
   private Object json;
-  private Map<String, String> jsonSlotToPropertyName = new HashMap<String, String>();
   private Map<String, String> propertyNameToJsonSlot = new HashMap<String, String>();
+  private JsonSlotLayout slotLayout;
+  private IType[] slotTypes;
   private List<IPropertyInfo> properties;
+  private Map<String, IPropertyInfo> propertiesByName;
 
   private LockingLazyVar<MethodList> methods = new LockingLazyVar<MethodList>() {
     @Override
@@ -68,6 +71,17 @@ public class JSchemaTypeInfo extends TypeInfoBase {
         })
         .build(JSchemaTypeInfo.this));
 
+      typeMethods.add(new MethodInfoBuilder()
+        .withName("writeBinary")
+        .withReturnType(TypeSystem.get(byte[].class))
+        .withCallHandler(new IMethodCallHandler() {
+          @Override
+          public Object handleCall(Object ctx, Object... args) {
+            return JSchemaUtils.serializeBinary(ctx, getOwnersType());
+          }
+        })
+        .build(JSchemaTypeInfo.this));
+
       typeMethods.add(new MethodInfoBuilder()
         .withName("prettyPrint")
         .withParameters(new ParameterInfoBuilder()
@@ -88,6 +102,55 @@ public class JSchemaTypeInfo extends TypeInfoBase {
         })
         .build(JSchemaTypeInfo.this));
 
+      typeMethods.add(new MethodInfoBuilder()
+        .withName("checkpoint")
+        .withReturnType(JavaTypes.pVOID())
+        .withCallHandler(new IMethodCallHandler() {
+          @Override
+          public Object handleCall(Object ctx, Object... args) {
+            ((JsonMap) ctx).checkpoint();
+            return null;
+          }
+        })
+        .build(JSchemaTypeInfo.this));
+
+      typeMethods.add(new MethodInfoBuilder()
+        .withName("freeze")
+        .withReturnType(getOwnersType())
+        .withCallHandler(new IMethodCallHandler() {
+          @Override
+          public Object handleCall(Object ctx, Object... args) {
+            return ((JsonMap) ctx).freeze();
+          }
+        })
+        .build(JSchemaTypeInfo.this));
+
+      typeMethods.add(new MethodInfoBuilder()
+        .withName("writeDelta")
+        .withReturnType(JavaTypes.STRING())
+        .withCallHandler(new IMethodCallHandler() {
+          @Override
+          public Object handleCall(Object ctx, Object... args) {
+            return ((JsonMap) ctx).writeDelta();
+          }
+        })
+        .build(JSchemaTypeInfo.this));
+
+      typeMethods.add(new MethodInfoBuilder()
+        .withName("applyPatch")
+        .withParameters(new ParameterInfoBuilder()
+          .withType(JavaTypes.STRING())
+          .withName("patch"))
+        .withReturnType(JavaTypes.pVOID())
+        .withCallHandler(new IMethodCallHandler() {
+          @Override
+          public Object handleCall(Object ctx, Object... args) {
+            ((JsonMap) ctx).applyPatch((String) args[0]);
+            return null;
+          }
+        })
+        .build(JSchemaTypeInfo.this));
+
       typeMethods.add(new MethodInfoBuilder()
         .withName("asJson")
         .withReturnType(TypeSystem.get(JsonMap.class))
@@ -134,6 +197,21 @@ public class JSchemaTypeInfo extends TypeInfoBase {
           }
         }).build(this));
 
+      _findMethod = new MethodInfoBuilder()
+        .withName("find")
+        .withParameters(new ParameterInfoBuilder()
+          .withType(TypeSystem.get(IType.class))
+          .withName("type"))
+        .withReturnType(Iterable.class)
+        .withCallHandler(new IMethodCallHandler() {
+          @Override
+          public Object handleCall(Object ctx, Object... args) {
+            JsonMap jsonMap = (JsonMap) ctx;
+            return jsonMap.findDescendents((IType) args[0]);
+          }
+        }).build(this);
+      typeMethods.add(_findMethod);
+
       return typeMethods;
     }
   }
@@ -176,6 +254,18 @@ public class JSchemaTypeInfo extends TypeInfoBase {
       })
       .build(owner));
 
+    typeMethods.add(parseMethod(producedType)
+      .withParameters(new ParameterInfoBuilder()
+        .withType(TypeSystem.get(byte[].class))
+        .withName("content"))
+      .withCallHandler(new IMethodCallHandler() {
+        @Override
+        public Object handleCall(Object ctx, Object... args) {
+          return JSchemaUtils.parseBinary((byte[]) args[0], producedType);
+        }
+      })
+      .build(owner));
+
     typeMethods.add(new MethodInfoBuilder()
       .withName("get")
       .withParameters(new ParameterInfoBuilder()
@@ -261,6 +351,13 @@ public class JSchemaTypeInfo extends TypeInfoBase {
     } else {
       properties = createStructProperties();
     }
+    Map<String, IPropertyInfo> byName = new HashMap<String, IPropertyInfo>(properties.size() * 2);
+    for (IPropertyInfo property : properties) {
+      if (!byName.containsKey(property.getName())) {
+        byName.put(property.getName(), property);
+      }
+    }
+    propertiesByName = byName;
   }
 
   private boolean isJsonEnum() {
@@ -294,7 +391,9 @@ public class JSchemaTypeInfo extends TypeInfoBase {
 
   private List<IPropertyInfo> createStructProperties() {
     ArrayList<IPropertyInfo> props = new ArrayList<IPropertyInfo>();
-    HashSet<String> propNames = new HashSet<String>();
+    List<String> jsonSlots = new ArrayList<String>();
+    List<Integer> slotKinds = new ArrayList<Integer>();
+    List<IType> propTypes = new ArrayList<IType>();
 
     if (json instanceof Map) {
       Map jsonMap = (Map) json;
@@ -304,33 +403,23 @@ public class JSchemaTypeInfo extends TypeInfoBase {
           continue;
         }
 
-        final String jsonSlotName = (String) k;
+        String jsonSlotName = (String) k;
         String propertyName = JSchemaUtils.convertJSONStringToGosuIdentifier(jsonSlotName);
         final Object value = jsonMap.get(jsonSlotName);
 
-        jsonSlotToPropertyName.put(jsonSlotName, propertyName);
         propertyNameToJsonSlot.put(propertyName, jsonSlotName);
+        int ordinal = jsonSlots.size();
+        jsonSlots.add(jsonSlotName);
 
         final IType propType = getOwnersType().resolveInnerType(getOwnersType() + "." + propertyName, value);
+        slotKinds.add(slotKind(propType));
+        propTypes.add(propType);
 
         PropertyInfoBuilder pib = new PropertyInfoBuilder()
           .withName(propertyName)
           .withType(propType);
-        propNames.add(propertyName);
 
-        pib.withAccessor(new IPropertyAccessor() {
-          @Override
-          public void setValue(Object ctx, Object value) {
-            JsonMap json = (JsonMap) ctx;
-            json.put(jsonSlotName, value);
-          }
-
-          @Override
-          public Object getValue(Object ctx) {
-            JsonMap json = (JsonMap) ctx;
-            return json.get(jsonSlotName);
-          }
-        });
+        pib.withAccessor(createSlotAccessor(jsonSlotName, ordinal, slotKind(propType)));
 
 //        if (propType instanceof IEnumType) {
 //          //ignore
@@ -346,9 +435,99 @@ public class JSchemaTypeInfo extends TypeInfoBase {
         props.add(pib.build(this));
       }
     }
+    int[] kinds = new int[slotKinds.size()];
+    for (int i = 0; i < kinds.length; i++) {
+      kinds[i] = slotKinds.get(i);
+    }
+    slotLayout = new JsonSlotLayout(jsonSlots, kinds);
+    slotTypes = propTypes.toArray(new IType[propTypes.size()]);
     return props;
   }
 
+  /**
+   * Reads and writes a property through its slot ordinal when the map uses this type's slot layout,
+   * and by name otherwise.  Int and boolean values are written unboxed and other values that
+   * are not JSON objects, dates included (which the map unboxes), are written without parent tracking.
+   */
+  private abstract class SlotAccessor implements IPropertyAccessor {
+    final String jsonSlotName;
+    final int ordinal;
+
+    SlotAccessor(String jsonSlotName, int ordinal) {
+      this.jsonSlotName = jsonSlotName;
+      this.ordinal = ordinal;
+    }
+
+    @Override
+    public Object getValue(Object ctx) {
+      JsonMap json = (JsonMap) ctx;
+      if (json.getSlotLayout() == slotLayout) {
+        return json.getSlot(ordinal);
+      } else {
+        return json.get(jsonSlotName);
+      }
+    }
+
+    @Override
+    public void setValue(Object ctx, Object value) {
+      JsonMap json = (JsonMap) ctx;
+      if (json.getSlotLayout() != slotLayout) {
+        json.put(jsonSlotName, value);
+      } else if (value instanceof JsonObject) {
+        json.putSlot(ordinal, value);
+      } else {
+        putScalar(json, value);
+      }
+    }
+
+    abstract void putScalar(JsonMap json, Object value);
+  }
+
+  private IPropertyAccessor createSlotAccessor(String jsonSlotName, int ordinal, int kind) {
+    switch (kind) {
+      case JsonSlotLayout.LONG_SLOT:
+        return new SlotAccessor(jsonSlotName, ordinal) {
+          @Override
+          void putScalar(JsonMap json, Object value) {
+            if (value instanceof Long) {
+              json.putLongSlot(ordinal, (Long) value);
+            } else {
+              json.putScalarSlot(ordinal, value);
+            }
+          }
+        };
+      case JsonSlotLayout.BOOLEAN_SLOT:
+        return new SlotAccessor(jsonSlotName, ordinal) {
+          @Override
+          void putScalar(JsonMap json, Object value) {
+            if (value instanceof Boolean) {
+              json.putBooleanSlot(ordinal, (Boolean) value);
+            } else {
+              json.putScalarSlot(ordinal, value);
+            }
+          }
+        };
+      default:
+        return new SlotAccessor(jsonSlotName, ordinal) {
+          @Override
+          void putScalar(JsonMap json, Object value) {
+            json.putScalarSlot(ordinal, value);
+          }
+        };
+    }
+  }
+
+  private static int slotKind(IType propType) {
+    if (JavaTypes.LONG().equals(propType)) {
+      return JsonSlotLayout.LONG_SLOT;
+    } else if (JavaTypes.BOOLEAN().equals(propType)) {
+      return JsonSlotLayout.BOOLEAN_SLOT;
+    } else if (JavaTypes.DATE().equals(propType)) {
+      return JsonSlotLayout.DATE_SLOT;
+    }
+    return JsonSlotLayout.OBJECT_SLOT;
+  }
+
 //  private IAnnotationInfo makeMapAutoCreateAnnotation(final IType propType) {
 //    return makeAutocreateAnnotation(new Function0() {
 //      @Override
@@ -442,12 +621,7 @@ public class JSchemaTypeInfo extends TypeInfoBase {
 
 	@Override
 	public IPropertyInfo getProperty(CharSequence propName) {
-		for (IPropertyInfo prop : properties) {
-			if (propName.equals(prop.getName())) {
-				return prop;
-			}
-		}
-		return null;
+		return propName == null ? null : propertiesByName.get(propName.toString());
 	}
 
   @Override
@@ -482,20 +656,26 @@ public class JSchemaTypeInfo extends TypeInfoBase {
 	}
 
   public IType getTypeForJsonSlot(String key) {
-    String propertyName = jsonSlotToPropertyName.get(key);
-    if (propertyName != null) {
-      IPropertyInfo property = getProperty(propertyName);
-      if (property != null) {
-        return property.getFeatureType();
-      }
-    }
-    return null;
+    int ordinal = getJsonSlotOrdinal(key);
+    return ordinal < 0 || slotTypes == null ? null : slotTypes[ordinal];
   }
 
   public String getJsonSlotForPropertyName(String propName) {
     return propertyNameToJsonSlot.get(propName);
   }
 
+  public int getJsonSlotOrdinal(String key) {
+    return slotLayout == null ? -1 : slotLayout.getOrdinal(key);
+  }
+
+  public String getJsonSlotForOrdinal(int ordinal) {
+    return slotLayout != null && ordinal >= 0 && ordinal < slotLayout.size() ? slotLayout.getSlot(ordinal) : null;
+  }
+
+  public JsonSlotLayout getSlotLayout() {
+    return slotLayout;
+  }
+
   public boolean isListWrapper() {
     return getOwnersType() instanceof JSchemaListWrapperType;
   }
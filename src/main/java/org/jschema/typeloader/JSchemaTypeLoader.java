@@ -5,106 +5,302 @@ import gw.fs.IDirectory;
 import gw.fs.IFile;
 import gw.lang.reflect.IType;
 import gw.lang.reflect.RefreshKind;
+import gw.lang.reflect.RefreshRequest;
 import gw.lang.reflect.TypeLoaderBase;
 import gw.lang.reflect.TypeSystem;
 import gw.lang.reflect.module.IModule;
-import gw.util.GosuExceptionUtil;
 import gw.util.Pair;
-import gw.util.concurrent.LockingLazyVar;
 import org.jschema.model.JsonMap;
 import org.jschema.parser.JSchemaParser;
 import org.jschema.parser.JsonParseError;
 import org.jschema.parser.JsonParseException;
+import org.jschema.util.ConversionPlan;
 import org.jschema.util.JSchemaUtils;
+import org.jschema.util.JsonPath;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class JSchemaTypeLoader extends TypeLoaderBase {
 
-  private Map<String, IJSchemaType> _rawTypes = new HashMap<String, IJSchemaType>();
-  private Map<IFile, List<String>> _filesToTypes = new HashMap<IFile, List<String>>();
+  static final String JSCHEMA_EXT = "jschema";
+  static final String JSON_EXT = "json";
 
-  private static final String JSCHEMA_EXT = "jschema";
-  private static final String JSON_EXT = "json";
-  private boolean _initing;
-  private Set<String> _namespaces;
+  /*
+   * Reads take no locks: the maps below are concurrent, and the file index and namespaces are
+   * immutable snapshots replaced as a whole.  Loading and refreshing types is done holding the
+   * loader's lock, parsing (the slow part) is done before taking it.  Refreshing swaps in a copy of
+   * the type map, so a reader never sees a file's types half removed.
+   */
+  private volatile ConcurrentHashMap<String, IJSchemaType> _rawTypes = new ConcurrentHashMap<String, IJSchemaType>();
+  private final ConcurrentHashMap<String, IType> _typeRefs = new ConcurrentHashMap<String, IType>();
+  private final Map<IFile, List<String>> _filesToTypes = new ConcurrentHashMap<IFile, List<String>>();
+  private final JSchemaMetadataCache _metadataCache = JSchemaMetadataCache.fromSystemProperties();
+  private final JSchemaAssignabilityCache _assignabilityCache = new JSchemaAssignabilityCache();
+  private final JSchemaAssignabilityCache _enumEquivalenceCache = new JSchemaAssignabilityCache();
+  private final ConversionPlan.Cache _conversionPlans = new ConversionPlan.Cache();
+  private volatile SchemaFiles _files;
+  private volatile Set<String> _namespaces;
 
   public boolean handlesNonPrefixLoads() {
     return true;
   }
 
-  private LockingLazyVar<List<JsonFile>> _jscFiles = new LockingLazyVar<List<JsonFile>>() {
-    @Override
-    protected List<JsonFile> init() {
-      return findFilesOfType( JSCHEMA_EXT );
-    }
-  };
-
-  private LockingLazyVar<List<JsonFile>> _jsonFiles = new LockingLazyVar<List<JsonFile>>() {
-    @Override
-    protected List<JsonFile> init() {
-      return findFilesOfType(JSON_EXT);
-    }
-  };
-
-
   public JSchemaTypeLoader(IModule env) {
     super(env);
   }
 
+  /**
+   * The module's schema files, found once by the first caller while any concurrent callers wait.
+   * When there are precompiled indexes on the module's own class path these are the schemas in them,
+   * and the source path is not walked at all.  In dev mode the source path is walked as well and its
+   * files win over the indexes.  Without indexes these are the files in the source path.
+   */
+  private SchemaFiles files() {
+    SchemaFiles files = _files;
+    if (files == null) {
+      synchronized (this) {
+        files = _files;
+        if (files == null) {
+          JSchemaPrecompiledIndex index = JSchemaPrecompiledIndex.load(getModule().getJavaClassPath());
+          if (index == null) {
+            files = new SchemaFiles(findFilesOfType(JSCHEMA_EXT, JSON_EXT));
+          } else if (JSchemaPrecompiledIndex.isDevMode()) {
+            files = new SchemaFiles(withPrecompiledFiles(findFilesOfType(JSCHEMA_EXT, JSON_EXT), index));
+          } else {
+            files = new SchemaFiles(withPrecompiledFiles(Collections.<JsonFile>emptyList(), index));
+          }
+          _files = files;
+        }
+      }
+    }
+    return files;
+  }
+
   @Override
   public IType getType(String fullyQualifiedName) {
-    maybeInitTypes();
-    if (fullyQualifiedName == null || _rawTypes.get(fullyQualifiedName) == null) {
+    if (fullyQualifiedName == null) {
       return null;
     }
-    IType iType = _rawTypes.get(fullyQualifiedName);
-    return TypeSystem.getOrCreateTypeReference(iType);
+    IType typeRef = _typeRefs.get(fullyQualifiedName);
+    if (typeRef == null) {
+      IType iType = getRawType(fullyQualifiedName);
+      if (iType == null) {
+        return null;
+      }
+      typeRef = TypeSystem.getOrCreateTypeReference(iType);
+      IType existing = _typeRefs.putIfAbsent(fullyQualifiedName, typeRef);
+      if (existing != null) {
+        typeRef = existing;
+      } else if (_rawTypes.get(fullyQualifiedName) != iType) {
+        // a refresh unloaded the type before the reference was published, so it must not stay cached
+        _typeRefs.remove(fullyQualifiedName, typeRef);
+      }
+    }
+    return typeRef;
+  }
+
+  private IJSchemaType getRawType(String name) {
+    IJSchemaType type = _rawTypes.get(name);
+    if (type == null) {
+      SchemaFiles files = files();
+      JsonFile file = files.fileDeclaring(name);
+      if (file != null && !file.loaded) {
+        parseLinkedFiles(files, file);
+        synchronized (this) {
+          if (!file.loading) {
+            loadFile(file);
+          }
+        }
+        type = _rawTypes.get(name);
+      }
+    }
+    return type;
   }
 
   @Override
   public Set<? extends CharSequence> getAllNamespaces()
   {
-    if (_namespaces == null) {
+    Set<String> namespaces = _namespaces;
+    if (namespaces == null) {
       try {
-        _namespaces = TypeSystem.getNamespacesFromTypeNames(getAllTypeNames(), new HashSet<String>());
+        namespaces = Collections.unmodifiableSet(TypeSystem.getNamespacesFromTypeNames(getAllTypeNames(), new HashSet<String>()));
       } catch (NullPointerException e) {
         //!! hack to get past dependency issue with tests
         return Collections.emptySet();
       }
+      _namespaces = namespaces;
     }
-    return _namespaces;
+    return namespaces;
   }
 
-  private void maybeInitTypes() {
-    if (!_initing) {
-      if (_rawTypes.isEmpty()) {
-        _initing = true;
-        try {
-          for (JsonFile jshFile : _jscFiles.get()) {
-            try {
-              jshFile.parseContent();
-              addRootType(_rawTypes, new Stack<Map<String, String>>(), jshFile, jshFile.file, _filesToTypes);
-            } catch (Exception e) {
-              throw GosuExceptionUtil.forceThrow(e);
-            }
+  /**
+   * Parses a file and adds its types.  Root types of other files nested in this file's types are
+   * loaded along with it, and the file declaring this file's outer type before it, so that inner
+   * classes are linked as they would be if every file were loaded.  Each file's types are linked
+   * before they are published.  Must hold the loader's lock, and the files should have been parsed
+   * by parseLinkedFiles before taking it.
+   */
+  private void loadFile(JsonFile file) {
+    file.loading = true;
+    SchemaFiles files = files();
+    Map<String, IJSchemaType> fileTypes = new LinkedHashMap<String, IJSchemaType>();
+    try {
+      JsonFile outerFile = files.fileDeclaring(namespaceOf(file.rootTypeName));
+      if (outerFile != null && !outerFile.loading) {
+        loadFile(outerFile);
+      }
+      file.ensureParsed(_metadataCache);
+      Map<IFile, List<String>> fileMapping = new HashMap<IFile, List<String>>();
+      addRootType(fileTypes, new Stack<Map<String, String>>(), file, file.file, fileMapping);
+      initInnerClasses(fileTypes);
+      for (Map.Entry<IFile, List<String>> typeNames : fileMapping.entrySet()) {
+        _filesToTypes.put(typeNames.getKey(), Collections.unmodifiableList(typeNames.getValue()));
+      }
+      _rawTypes.putAll(fileTypes);
+      file.loaded = true;
+    } finally {
+      if (!file.loaded) {
+        // let the next request try again rather than resolve the file's types to null for good
+        file.loading = false;
+      }
+    }
+    for (String name : fileTypes.keySet()) {
+      List<JsonFile> nestedFiles = files.filesIn(name);
+      for (JsonFile nestedFile : nestedFiles) {
+        if (!nestedFile.loading) {
+          loadFile(nestedFile);
+        } else {
+          IJSchemaType nestedType = _rawTypes.get(nestedFile.rootTypeName);
+          if (nestedType != null) {
+            fileTypes.get(name).addInnerClass(nestedType);
           }
-          for (JsonFile jsonFile : _jsonFiles.get()) {
-            try {
-              jsonFile.parseContent();
-              convertToJSchemaAndAddRootType(_rawTypes, jsonFile, jsonFile.file, _filesToTypes);
-            } catch (Exception e) {
-              throw GosuExceptionUtil.forceThrow(e);
-            }
+        }
+      }
+    }
+  }
+
+  /**
+   * Parses, without the loader's lock, every file that loading the given file may load along with
+   * it: the outermost file enclosing it and every file nested in that one's types, so that loadFile
+   * finds them all parsed.
+   */
+  private void parseLinkedFiles(SchemaFiles files, JsonFile file) {
+    JsonFile outermost = file;
+    for (JsonFile outer = files.fileDeclaring(namespaceOf(file.rootTypeName)); outer != null;
+         outer = files.fileDeclaring(namespaceOf(outer.rootTypeName))) {
+      outermost = outer;
+    }
+    outermost.ensureParsed(_metadataCache);
+    for (JsonFile nested : files.filesUnder(outermost.rootTypeName)) {
+      if (!nested.loaded) {
+        nested.ensureParsed(_metadataCache);
+      }
+    }
+  }
+
+  /**
+   * Removes a file's types, which are reloaded from the file when next requested.  Must hold the
+   * loader's lock.
+   */
+  private void unloadFile(JsonFile file) {
+    List<String> typeNames = _filesToTypes.remove(file.file);
+    if (typeNames != null) {
+      ConcurrentHashMap<String, IJSchemaType> rawTypes = new ConcurrentHashMap<String, IJSchemaType>(_rawTypes);
+      for (String name : typeNames) {
+        IJSchemaType type = rawTypes.remove(name);
+        if (type != null) {
+          IType outerType = rawTypes.get(type.getNamespace());
+          if (outerType instanceof IJSchemaType) {
+            ((IJSchemaType) outerType).removeInnerClass(type);
           }
-          initInnerClasses(_rawTypes);
-        } finally {
-          _initing = false;
         }
       }
+      // the types go before their references, which getType relies on to drop references it races with
+      _rawTypes = rawTypes;
+      for (String name : typeNames) {
+        _typeRefs.remove(name);
+      }
     }
+    file.unload();
+  }
+
+  /**
+   * Drops the types of a created, modified or deleted file, leaving the types of every other file
+   * alone.  The type system refreshes the names returned by {@link #getTypesForFile(IFile)}.
+   */
+  @Override
+  protected synchronized void refreshedTypesImpl(RefreshRequest request) {
+    _assignabilityCache.clear();
+    _enumEquivalenceCache.clear();
+    _conversionPlans.clear();
+    JsonPath.clearCache();
+    if (request.file != null) {
+      refreshedFile(request.file, request.kind);
+    } else if (request.types != null) {
+      for (String name : request.types) {
+        JsonFile file = _files != null ? _files.fileDeclaring(name) : null;
+        if (file != null) {
+          refreshedFile(file.file, RefreshKind.MODIFICATION);
+        }
+      }
+    }
+  }
+
+  private void refreshedFile(IFile file, RefreshKind kind) {
+    SchemaFiles files = _files;
+    if (files == null) {
+      return;
+    }
+    JsonFile jsonFile = files.fileFor(file);
+    if (jsonFile != null) {
+      unloadFile(jsonFile);
+      if (kind == RefreshKind.DELETION) {
+        _files = files.without(jsonFile);
+        _namespaces = null;
+      }
+    } else if (kind != RefreshKind.DELETION) {
+      jsonFile = newJsonFile(file);
+      if (jsonFile != null) {
+        _files = files.with(jsonFile);
+        _namespaces = null;
+      }
+    }
+  }
+
+  @Override
+  protected synchronized void refreshedImpl() {
+    _files = null;
+    _rawTypes = new ConcurrentHashMap<String, IJSchemaType>();
+    _typeRefs.clear();
+    _filesToTypes.clear();
+    _assignabilityCache.clear();
+    _enumEquivalenceCache.clear();
+    _conversionPlans.clear();
+    JsonPath.clearCache();
+    _namespaces = null;
+  }
+
+  JSchemaAssignabilityCache getAssignabilityCache() {
+    return _assignabilityCache;
+  }
+
+  JSchemaAssignabilityCache getEnumEquivalenceCache() {
+    return _enumEquivalenceCache;
+  }
+
+  /**
+   * @return the conversion plans between this loader's types
+   */
+  public ConversionPlan.Cache getConversionPlans() {
+    return _conversionPlans;
+  }
+
+  private static String namespaceOf(String typeName) {
+    int lastDot = typeName.lastIndexOf('.');
+    return lastDot < 0 ? "" : typeName.substring(0, lastDot);
   }
 
   public String[] getTypesForFile( IFile file ) {
@@ -120,14 +316,17 @@ public class JSchemaTypeLoader extends TypeLoaderBase {
   }
 
   @Override
-  public void refreshedNamespace( String namespace, IDirectory dir, RefreshKind kind )
+  public synchronized void refreshedNamespace( String namespace, IDirectory dir, RefreshKind kind )
   {
-    if (_namespaces != null) {
+    Set<String> namespaces = _namespaces;
+    if (namespaces != null) {
+      Set<String> updated = new HashSet<String>(namespaces);
       if (kind == RefreshKind.CREATION) {
-        _namespaces.add(namespace);
+        updated.add(namespace);
       } else if (kind == RefreshKind.DELETION) {
-        _namespaces.remove(namespace);
+        updated.remove(namespace);
       }
+      _namespaces = Collections.unmodifiableSet(updated);
     }
   }
 
@@ -137,15 +336,29 @@ public class JSchemaTypeLoader extends TypeLoaderBase {
     return getAllNamespaces().contains( namespace );
   }
 
+  /**
+   * The names of the root types of all files, taken from their paths, and of the types loaded so far.
+   * Inner types of files that have not been loaded are not included, but are found by getType.
+   */
   @Override
   public Set<String> computeTypeNames()
   {
-    maybeInitTypes();
-    return _rawTypes.keySet();
+    Set<String> names = new HashSet<String>(files().rootTypeNames());
+    names.addAll(_rawTypes.keySet());
+    return names;
   }
 
   private List<String> getTypeNamesForFile(IFile file) {
-    maybeInitTypes();
+    SchemaFiles files = files();
+    JsonFile jsonFile = files.fileFor(file);
+    if (jsonFile != null && !jsonFile.loaded) {
+      parseLinkedFiles(files, jsonFile);
+      synchronized (this) {
+        if (!jsonFile.loading) {
+          loadFile(jsonFile);
+        }
+      }
+    }
     List<String> typeNames = _filesToTypes.get(file);
     if (typeNames == null) {
       typeNames = Collections.emptyList();
@@ -153,16 +366,13 @@ public class JSchemaTypeLoader extends TypeLoaderBase {
     return typeNames;
   }
 
-  private void convertToJSchemaAndAddRootType(Map<String, IJSchemaType> rawTypes, JsonFile jsonFile, IFile file, Map<IFile, List<String>> fileMapping) {
-    jsonFile.content = JSchemaUtils.convertJsonToJSchema(jsonFile.content);
-    addRootType(rawTypes, new Stack<Map<String, String>>(), jsonFile, file, fileMapping);
-    return;
-  }
-
-  private void initInnerClasses(Map<String, IJSchemaType> rawTypes) {
-    for (String name : rawTypes.keySet()) {
-      IType iType = rawTypes.get(name);
-      IType outerType = rawTypes.get(iType.getNamespace());
+  private void initInnerClasses(Map<String, IJSchemaType> newTypes) {
+    for (String name : newTypes.keySet()) {
+      IType iType = newTypes.get(name);
+      IType outerType = newTypes.get(iType.getNamespace());
+      if (outerType == null) {
+        outerType = _rawTypes.get(iType.getNamespace());
+      }
       if (outerType instanceof IJSchemaType) {
         ((IJSchemaType) outerType).addInnerClass(iType);
       }
@@ -170,18 +380,20 @@ public class JSchemaTypeLoader extends TypeLoaderBase {
   }
 
   private void addRootType(Map<String, IJSchemaType> rawTypes, Stack<Map<String, String>> typeDefs, JsonFile jshFile, IFile file, Map<IFile, List<String>> fileMapping) {
-    if (jshFile.content instanceof List) {
+    // the file's content is left as parsed, so that a load that fails can be retried
+    Object content = jshFile.content;
+    if (content instanceof List) {
       int depth = 0;
-      while (jshFile.content instanceof List && ((List) jshFile.content).size() > 0) {
+      while (content instanceof List && ((List) content).size() > 0) {
         depth++;
-        jshFile.content = ((List) jshFile.content).get(0);
+        content = ((List) content).get(0);
       }
-      addTypes(rawTypes, typeDefs, jshFile.rootTypeName + ".Element", jshFile.content, file, fileMapping);
-      JSchemaListWrapperType rawType = new JSchemaListWrapperType(jshFile.rootTypeName, this, depth, jshFile.content, jshFile.file );
-      rawTypes.put(jshFile.rootTypeName, rawType);
+      addTypes(rawTypes, typeDefs, jshFile.rootTypeName + ".Element", content, file, fileMapping);
+      JSchemaListWrapperType rawType = new JSchemaListWrapperType(jshFile.rootTypeName, this, depth, content, jshFile.file );
+      putType(rawTypes, jshFile.rootTypeName, rawType, file, fileMapping);
       rawType.addErrors(jshFile.errors);
     } else {
-      addTypes(rawTypes, typeDefs, jshFile.rootTypeName, jshFile.content, file, fileMapping);
+      addTypes(rawTypes, typeDefs, jshFile.rootTypeName, content, file, fileMapping);
       IJSchemaType rootType = rawTypes.get(jshFile.rootTypeName);
       if (rootType instanceof JSchemaTypeBase) {
         ((JSchemaTypeBase) rootType).addErrors(jshFile.errors);
@@ -223,6 +435,9 @@ public class JSchemaTypeLoader extends TypeLoaderBase {
 
   private void putType(Map<String, IJSchemaType> rawTypes, String name, IJSchemaType type, IFile file, Map<IFile, List<String>> fileMapping) {
     rawTypes.put(name, type);
+    if (file == null) {
+      return;
+    }
     List<String> iTypes = fileMapping.get(file);
     if (iTypes == null) {
       iTypes = new ArrayList<String>();
@@ -247,94 +462,328 @@ public class JSchemaTypeLoader extends TypeLoaderBase {
   /*
   * Default implementation to handle Gosu 0.9 reqs
   */
-  private List<JsonFile> findFilesOfType(String extension) {
+  private List<JsonFile> findFilesOfType(String... extensions) {
     List<JsonFile> init = new java.util.ArrayList<JsonFile>();
-    List<Pair<String, IFile>> files = findAllFilesByExtension( getModule(), extension );
-    for (Pair<String, IFile> pair : files) {
-      JsonFile current = new JsonFile();
-      current.file = pair.getSecond();
-      String relativeNameAsFile = pair.getFirst();
-      int trimmedLength = relativeNameAsFile.length() - extension.length() - 1;
-      String typeName = relativeNameAsFile.replace('/', '.').replace('\\', '.').substring(0, trimmedLength);
-      if (typeName.indexOf('.') == -1) {
-        //TODO ignore?
-        throw new RuntimeException("Cannot have Simple JSON Schema definitions in the default package");
+    List<List<Pair<String, IFile>>> filesByExtension = findAllFilesByExtensions( getModule(), extensions );
+    for (int i = 0; i < extensions.length; i++) {
+      for (Pair<String, IFile> pair : filesByExtension.get(i)) {
+        init.add(newJsonFile(pair, extensions[i]));
       }
-      current.rootTypeName = typeName;
-      init.add(current);
     }
     return init;
   }
 
+  /**
+   * @return the schema file for a file created under the source path, or null if it is not one or
+   * is in the default package
+   */
+  private JsonFile newJsonFile(IFile file) {
+    String extension = extensionOf(file.getName());
+    if (extension == null) {
+      return null;
+    }
+    List<IDirectory> sourcePath = getModule().getSourcePath();
+    String relativePath = file.getName();
+    for (IDirectory dir = file.getParent(); dir != null; dir = dir.getParent()) {
+      if (sourcePath.contains(dir)) {
+        if (dir.getName().equals(IModule.CONFIG_RESOURCE_PREFIX)) {
+          relativePath = appendResourceNameToPath(IModule.CONFIG_RESOURCE_PREFIX, relativePath);
+        }
+        // a schema created in the default package is skipped here rather than failing the refresh
+        if (rootTypeNameFor(relativePath, extension) == null) {
+          return null;
+        }
+        return newJsonFile(new Pair<String, IFile>(relativePath, file), extension);
+      }
+      relativePath = appendResourceNameToPath(dir.getName(), relativePath);
+    }
+    return null;
+  }
+
+  private static JsonFile newJsonFile(Pair<String, IFile> pair, String extension) {
+    JsonFile current = new JsonFile();
+    current.file = pair.getSecond();
+    current.convertFromJson = JSON_EXT.equals(extension);
+    String typeName = rootTypeNameFor(pair.getFirst(), extension);
+    if (typeName == null) {
+      //TODO ignore?
+      throw new RuntimeException("Cannot have Simple JSON Schema definitions in the default package");
+    }
+    current.rootTypeName = typeName;
+    return current;
+  }
+
+  /**
+   * Adds the schemas of a precompiled index to the module's source files, except where a source
+   * file declares the same root type.
+   */
+  private static List<JsonFile> withPrecompiledFiles(List<JsonFile> sourceFiles, JSchemaPrecompiledIndex index) {
+    List<JsonFile> files = new ArrayList<JsonFile>(sourceFiles);
+    Set<String> sourceTypeNames = new HashSet<String>();
+    for (JsonFile file : sourceFiles) {
+      sourceTypeNames.add(file.rootTypeName);
+    }
+    for (Map.Entry<String, byte[]> schema : index.getSchemas().entrySet()) {
+      if (sourceTypeNames.contains(schema.getKey())) {
+        continue;
+      }
+      JsonFile current = new JsonFile();
+      current.rootTypeName = schema.getKey();
+      current.precompiled = schema.getValue();
+      files.add(current);
+    }
+    return files;
+  }
+
+  /**
+   * @return the extension of a schema file name, or null if it is not one
+   */
+  static String extensionOf(String fileName) {
+    return fileName.endsWith("." + JSCHEMA_EXT) ? JSCHEMA_EXT :
+           fileName.endsWith("." + JSON_EXT) ? JSON_EXT : null;
+  }
+
+  /**
+   * @return the root type name for a schema file's path relative to its source directory, or null if
+   * the file is in the default package
+   */
+  static String rootTypeNameFor(String relativeNameAsFile, String extension) {
+    int trimmedLength = relativeNameAsFile.length() - extension.length() - 1;
+    String typeName = relativeNameAsFile.replace('/', '.').replace('\\', '.').substring(0, trimmedLength);
+    return typeName.indexOf('.') == -1 ? null : typeName;
+  }
+
+  /**
+   * Parses the text of a schema file, converting JSON documents to the JSchema they imply.
+   */
+  static JSchemaMetadataCache.Entry parseSchema(String text, boolean convertFromJson) {
+    Object content;
+    List<JsonParseError> errors = null;
+    JSchemaParser parser = new JSchemaParser(text);
+    try{
+      content = parser.parseJSchema();
+    } catch (JsonParseException e) {
+      content = parser.getValue();
+      if (content == null) {
+        content = new JsonMap();
+      }
+      errors = parser.getErrors();
+    }
+    if (convertFromJson) {
+      content = JSchemaUtils.convertJsonToJSchema(content);
+    }
+    return new JSchemaMetadataCache.Entry(content, errors);
+  }
+
+  /**
+   * The schema files of the module, indexed by root type name, by file and by namespace.  Never
+   * changed once built.
+   */
+  private static class SchemaFiles {
+    private final Map<String, JsonFile> _byRootTypeName = new LinkedHashMap<String, JsonFile>();
+    private final Map<IFile, JsonFile> _byFile = new HashMap<IFile, JsonFile>();
+    private final Map<String, List<JsonFile>> _byNamespace = new HashMap<String, List<JsonFile>>();
+
+    private SchemaFiles(Collection<JsonFile> files) {
+      for (JsonFile file : files) {
+        JsonFile replaced = _byRootTypeName.put(file.rootTypeName, file);
+        if (replaced != null && replaced.file != null) {
+          _byFile.remove(replaced.file);
+        }
+        if (file.file != null) {
+          _byFile.put(file.file, file);
+        }
+      }
+      for (JsonFile file : _byRootTypeName.values()) {
+        String namespace = namespaceOf(file.rootTypeName);
+        List<JsonFile> inNamespace = _byNamespace.get(namespace);
+        if (inNamespace == null) {
+          inNamespace = new ArrayList<JsonFile>();
+          _byNamespace.put(namespace, inNamespace);
+        }
+        inNamespace.add(file);
+      }
+    }
+
+    /**
+     * @return a copy of this index with the file added, replacing any file with the same root type
+     */
+    private SchemaFiles with(JsonFile file) {
+      List<JsonFile> files = new ArrayList<JsonFile>(all());
+      files.add(file);
+      return new SchemaFiles(files);
+    }
+
+    private SchemaFiles without(JsonFile file) {
+      List<JsonFile> files = new ArrayList<JsonFile>(all());
+      files.remove(file);
+      return new SchemaFiles(files);
+    }
+
+    /**
+     * @return the file whose root type is the given type or encloses it, or null
+     */
+    private JsonFile fileDeclaring(String typeName) {
+      String name = typeName;
+      while (true) {
+        JsonFile file = _byRootTypeName.get(name);
+        if (file != null) {
+          return file;
+        }
+        int lastDot = name.lastIndexOf('.');
+        if (lastDot < 0) {
+          return null;
+        }
+        name = name.substring(0, lastDot);
+      }
+    }
+
+    private JsonFile fileFor(IFile file) {
+      return _byFile.get(file);
+    }
+
+    private List<JsonFile> filesIn(String namespace) {
+      List<JsonFile> files = _byNamespace.get(namespace);
+      return files == null ? Collections.<JsonFile>emptyList() : files;
+    }
+
+    /**
+     * @return the files whose root types are nested, at any depth, in the given type
+     */
+    private List<JsonFile> filesUnder(String typeName) {
+      List<JsonFile> files = new ArrayList<JsonFile>();
+      String prefix = typeName + ".";
+      for (Map.Entry<String, List<JsonFile>> inNamespace : _byNamespace.entrySet()) {
+        if (inNamespace.getKey().equals(typeName) || inNamespace.getKey().startsWith(prefix)) {
+          files.addAll(inNamespace.getValue());
+        }
+      }
+      return files;
+    }
+
+    private Set<String> rootTypeNames() {
+      return Collections.unmodifiableSet(_byRootTypeName.keySet());
+    }
+
+    private Collection<JsonFile> all() {
+      return Collections.unmodifiableCollection(_byRootTypeName.values());
+    }
+  }
+
   private static class JsonFile {
+    private volatile boolean loaded;
+    private boolean loading;
     private Object content;
     private String stringContent;
     private String rootTypeName;
     private IFile file;
+    private boolean convertFromJson;
+    private byte[] precompiled;
     private List<JsonParseError> errors;
 
     @Override
     public String toString() {
-      return file.getPath().getPathString();
+      return file == null ? rootTypeName : file.getPath().getPathString();
+    }
+
+    /**
+     * Parses the file, or decodes it from the precompiled index, unless that has already been done.
+     */
+    public synchronized void ensureParsed(JSchemaMetadataCache cache) {
+      if (content == null) {
+        if (precompiled != null) {
+          content = JSchemaPrecompiledIndex.decode(precompiled);
+        } else {
+          parseContent(cache);
+        }
+      }
     }
 
-    public void parseContent() {
+    public synchronized void unload() {
+      loaded = false;
+      loading = false;
+      content = null;
+      stringContent = null;
+      errors = null;
+    }
+
+    private void parseContent(JSchemaMetadataCache cache) {
       try {
         StringBuilder jsonString = new StringBuilder();
         InputStream src = file.openInputStream();
         Scanner s = new Scanner(src);
-        while (s.hasNextLine()) {
-          jsonString.append(s.nextLine());
-          jsonString.append("\n");
-        }
-        stringContent = jsonString.toString();
-        JSchemaParser parser = new JSchemaParser(stringContent);
-        try{
-          content = parser.parseJSchema();
-        } catch (JsonParseException e) {
-          content = parser.getValue();
-          if (content == null) {
-            content = new JsonMap();
+        try {
+          while (s.hasNextLine()) {
+            jsonString.append(s.nextLine());
+            jsonString.append("\n");
           }
-          errors = parser.getErrors();
         } finally {
           s.close();
         }
+        stringContent = jsonString.toString();
       } catch (IOException e) {
         content = new JsonMap();
         errors = new ArrayList<JsonParseError>();
         errors.add(new JsonParseError("Unable to open JSON file " + file.getPath().getFileSystemPathString() + ": " + e.getMessage(), 0, 0));
+        return;
+      }
+      String path = file.getPath().getFileSystemPathString();
+      JSchemaMetadataCache.Entry cached = cache == null ? null : cache.read(path, stringContent);
+      if (cached != null) {
+        content = cached.content;
+        errors = cached.errors;
+        return;
+      }
+      JSchemaMetadataCache.Entry parsed = parseSchema(stringContent, convertFromJson);
+      content = parsed.content;
+      errors = parsed.errors;
+      if (cache != null) {
+        cache.write(path, stringContent, content, errors);
       }
     }
   }
 
   public static List<Pair<String, IFile>> findAllFilesByExtension( IModule module, String extension ) {
-    List<Pair<String, IFile>> results = new ArrayList<>();
+    return findAllFilesByExtensions(module, extension).get(0);
+  }
 
+  /**
+   * Finds the files with each of the given extensions in a single walk of the source path.
+   *
+   * @return the files found for each extension, in the order of the extensions
+   */
+  public static List<List<Pair<String, IFile>>> findAllFilesByExtensions( IModule module, String... extensions ) {
+    List<List<Pair<String, IFile>>> results = new ArrayList<>();
+    for (int i = 0; i < extensions.length; i++) {
+      results.add(new ArrayList<Pair<String, IFile>>());
+    }
+    List<IDirectory> excludedPath = Arrays.asList(module.getFileRepository().getExcludedPath());
     for (IDirectory sourceEntry : module.getSourcePath()) {
       if (sourceEntry.exists()) {
         String prefix = sourceEntry.getName().equals(IModule.CONFIG_RESOURCE_PREFIX) ? IModule.CONFIG_RESOURCE_PREFIX : "";
-        addAllLocalResourceFilesByExtensionInternal(module, prefix, sourceEntry, extension, results);
+        addAllLocalResourceFilesByExtensionInternal(excludedPath, prefix, sourceEntry, extensions, results);
       }
     }
     return results;
   }
 
-  private static void addAllLocalResourceFilesByExtensionInternal( IModule module, String relativePath, IDirectory dir, String extension, List<Pair<String, IFile>> results ) {
-    List<IDirectory> excludedPath = Arrays.asList(module.getFileRepository().getExcludedPath());
+  private static void addAllLocalResourceFilesByExtensionInternal( List<IDirectory> excludedPath, String relativePath, IDirectory dir, String[] extensions, List<List<Pair<String, IFile>>> results ) {
     if ( excludedPath.contains( dir )) {
       return;
     }
     if(!CommonServices.getPlatformHelper().isPathIgnored(relativePath)) {
       for(IFile file : dir.listFiles()) {
-        if(file.getName().endsWith(extension)) {
-          String path = appendResourceNameToPath(relativePath, file.getName());
-          results.add(new Pair<>(path, file));
+        String name = file.getName();
+        for (int i = 0; i < extensions.length; i++) {
+          if(name.endsWith(extensions[i])) {
+            String path = appendResourceNameToPath(relativePath, name);
+            results.get(i).add(new Pair<>(path, file));
+          }
         }
       }
       for(IDirectory subdir : dir.listDirs()) {
         String path = appendResourceNameToPath(relativePath, subdir.getName());
-        addAllLocalResourceFilesByExtensionInternal(module, path, subdir, extension, results);
+        addAllLocalResourceFilesByExtensionInternal(excludedPath, path, subdir, extensions, results);
       }
     }
   }
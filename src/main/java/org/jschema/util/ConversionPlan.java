@@ -0,0 +1,432 @@
+package org.jschema.util;
+
+import gw.lang.reflect.IEnumType;
+import gw.lang.reflect.IEnumValue;
+import gw.lang.reflect.IPropertyInfo;
+import gw.lang.reflect.IType;
+import gw.lang.reflect.ITypeLoader;
+import gw.lang.reflect.TypeSystem;
+import org.jschema.model.JsonList;
+import org.jschema.model.JsonMap;
+import org.jschema.model.JsonSlotLayout;
+import org.jschema.typeloader.IJSchemaType;
+import org.jschema.typeloader.JSchemaTypeLoader;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compiled conversion of JSON values from one type to another, as done by
+ * {@link JSchemaUtils#cloneToType(IJSchemaType, JsonMap, IJSchemaType)}.  Slot mappings, enum code
+ * maps and the plans for nested values are worked out once per pair of types, so each conversion only
+ * copies values.  Plans between two types of the same JSchema type loader are cached by that loader
+ * until its types are refreshed; other plans are not cached, and are best kept by the caller.
+ *
+ * Conversions that can fail for some values (an enum code missing from the target enum, a value
+ * whose type is not assignable to the target type) are listed by {@link #getIncompatibilities()},
+ * and fail when such a value is met, unless the plan was made by {@link #forTypesChecked(IType, IType)}.
+ */
+public abstract class ConversionPlan {
+
+  private final IType _toType;
+  private final IType _fromType;
+
+  ConversionPlan(IType toType, IType fromType) {
+    _toType = toType;
+    _fromType = fromType;
+  }
+
+  public static ConversionPlan forTypes(IType toType, IType fromType) {
+    Cache cache = cacheFor(toType, fromType);
+    ConversionPlan plan = cache == null ? null : cache._plans.get(Arrays.asList(toType, fromType));
+    if (plan == null) {
+      Map<List<IType>, ConversionPlan> compiled = new HashMap<List<IType>, ConversionPlan>();
+      plan = compile(toType, fromType, cache, compiled);
+      if (cache != null) {
+        cache._plans.putAll(compiled);
+      }
+    }
+    return plan;
+  }
+
+  /**
+   * Plans a conversion that must not fail for any value.
+   *
+   * @throws IllegalArgumentException listing the incompatibilities, if the plan has any
+   */
+  public static ConversionPlan forTypesChecked(IType toType, IType fromType) {
+    ConversionPlan plan = forTypes(toType, fromType);
+    List<String> incompatibilities = plan.getIncompatibilities();
+    if (!incompatibilities.isEmpty()) {
+      throw new IllegalArgumentException("Cannot convert " + fromType.getName() + " to " + toType.getName() + " : " + incompatibilities);
+    }
+    return plan;
+  }
+
+  /**
+   * @return the cache of the type loader both types come from, or null if they are not from the same
+   * JSchema type loader
+   */
+  private static Cache cacheFor(IType toType, IType fromType) {
+    ITypeLoader loader = toType.getTypeLoader();
+    if (loader instanceof JSchemaTypeLoader && fromType.getTypeLoader() == loader) {
+      return ((JSchemaTypeLoader) loader).getConversionPlans();
+    }
+    return null;
+  }
+
+  public Object convert(Object from) {
+    try {
+      return convert(from, new IdentityHashMap<Object, Object>());
+    } catch (ConversionException e) {
+      throw new IllegalArgumentException(e.getMessage(), e);
+    }
+  }
+
+  public IType getToType() {
+    return _toType;
+  }
+
+  public IType getFromType() {
+    return _fromType;
+  }
+
+  /**
+   * @return a description of each conversion in this plan (and the plans nested in it) that may fail
+   */
+  public List<String> getIncompatibilities() {
+    List<String> incompatibilities = new ArrayList<String>();
+    addIncompatibilities("", incompatibilities, Collections.newSetFromMap(new IdentityHashMap<ConversionPlan, Boolean>()));
+    return incompatibilities;
+  }
+
+  void addIncompatibilities(String path, List<String> incompatibilities, Set<ConversionPlan> visited) {
+  }
+
+  /**
+   * @param copies the copies made so far, by identity of the value copied
+   */
+  abstract Object convert(Object from, IdentityHashMap<Object, Object> copies);
+
+  /**
+   * Plans the conversion, registering the plans of JSchema object types before filling them in so
+   * that recursive types refer back to them.
+   */
+  private static ConversionPlan compile(IType toType, IType fromType, Cache cache, Map<List<IType>, ConversionPlan> compiled) {
+    List<IType> key = Arrays.asList(toType, fromType);
+    ConversionPlan plan = cache == null ? null : cache._plans.get(key);
+    if (plan == null) {
+      plan = compiled.get(key);
+    }
+    if (plan != null) {
+      return plan;
+    }
+    if (toType instanceof IEnumType && fromType instanceof IEnumType) {
+      plan = new EnumPlan((IEnumType) toType, (IEnumType) fromType);
+      compiled.put(key, plan);
+    } else if (toType instanceof IJSchemaType && fromType instanceof IJSchemaType) {
+      ObjectPlan objectPlan = new ObjectPlan((IJSchemaType) toType, (IJSchemaType) fromType);
+      compiled.put(key, objectPlan);
+      objectPlan.init(cache, compiled);
+      plan = objectPlan;
+    } else if (TypeSystem.get(JsonList.class).isAssignableFrom(toType) &&
+      TypeSystem.get(JsonList.class).isAssignableFrom(fromType)) {
+      plan = new ListPlan(toType, fromType, compile(toType.getTypeParameters()[0], fromType.getTypeParameters()[0], cache, compiled));
+      compiled.put(key, plan);
+    } else if (TypeSystem.get(JsonMap.class).isAssignableFrom(toType) &&
+      TypeSystem.get(JsonMap.class).isAssignableFrom(fromType)) {
+      plan = new MapPlan(toType, fromType, compile(toType.getTypeParameters()[0], fromType.getTypeParameters()[0], cache, compiled));
+      compiled.put(key, plan);
+    } else {
+      plan = new ValuePlan(toType, fromType);
+      compiled.put(key, plan);
+    }
+    return plan;
+  }
+
+  /**
+   * The plans compiled between the types of one JSchema type loader, which owns it and clears it when
+   * its types are refreshed.
+   */
+  public static final class Cache {
+    private final ConcurrentHashMap<List<IType>, ConversionPlan> _plans = new ConcurrentHashMap<List<IType>, ConversionPlan>();
+
+    public void clear() {
+      _plans.clear();
+    }
+  }
+
+  /**
+   * Thrown by nested plans and given the path to the failing value on its way out.
+   */
+  private static class ConversionException extends RuntimeException {
+    private final String _prefix;
+    private final String _suffix;
+    private final LinkedList<String> _path = new LinkedList<String>();
+
+    private ConversionException(String prefix, String suffix) {
+      _prefix = prefix;
+      _suffix = suffix;
+    }
+
+    @Override
+    public String getMessage() {
+      StringBuilder path = new StringBuilder();
+      for (String s : _path) {
+        if (path.length() > 0) {
+          path.append(".");
+        }
+        path.append(s);
+      }
+      return _prefix + " at path : '" + path + "', " + _suffix;
+    }
+  }
+
+  /**
+   * Passes values through, checking each one unless the types are statically assignable.
+   */
+  private static class ValuePlan extends ConversionPlan {
+    private final boolean _assignable;
+
+    private ValuePlan(IType toType, IType fromType) {
+      super(toType, fromType);
+      _assignable = toType.isAssignableFrom(fromType);
+    }
+
+    @Override
+    Object convert(Object from, IdentityHashMap<Object, Object> copies) {
+      if (from == null || _assignable || getToType().isAssignableFrom(TypeSystem.getFromObject(from))) {
+        return from;
+      }
+      throw new ConversionException("Type mismatch", "Expected " + getToType().getName() + " but found " + getFromType().getName());
+    }
+
+    @Override
+    void addIncompatibilities(String path, List<String> incompatibilities, Set<ConversionPlan> visited) {
+      if (!_assignable) {
+        incompatibilities.add(path + " : " + getFromType().getName() + " is not assignable to " + getToType().getName());
+      }
+    }
+  }
+
+  private static class EnumPlan extends ConversionPlan {
+    private final Map<String, IEnumValue> _valuesByCode = new HashMap<String, IEnumValue>();
+    private final List<String> _missingCodes = new ArrayList<String>();
+
+    private EnumPlan(IEnumType toType, IEnumType fromType) {
+      super(toType, fromType);
+      for (IEnumValue value : fromType.getEnumValues()) {
+        IEnumValue toValue = toType.getEnumValue(value.getCode());
+        if (toValue != null) {
+          _valuesByCode.put(value.getCode(), toValue);
+        } else {
+          _missingCodes.add(value.getCode());
+        }
+      }
+    }
+
+    @Override
+    Object convert(Object from, IdentityHashMap<Object, Object> copies) {
+      if (from == null) {
+        return null;
+      }
+      String code = ((IEnumValue) from).getCode();
+      IEnumValue enumValue = _valuesByCode.get(code);
+      if (enumValue == null) {
+        enumValue = ((IEnumType) getToType()).getEnumValue(code);
+      }
+      if (enumValue != null) {
+        return enumValue;
+      }
+      throw new ConversionException("Enum mismatch", "Didn't find Enum value '" + code + "' in Enum " + getToType().getName());
+    }
+
+    @Override
+    void addIncompatibilities(String path, List<String> incompatibilities, Set<ConversionPlan> visited) {
+      for (String code : _missingCodes) {
+        incompatibilities.add(path + " : enum value '" + code + "' is not in " + getToType().getName());
+      }
+    }
+  }
+
+  private static abstract class ContainerPlan extends ConversionPlan {
+    final ConversionPlan _componentPlan;
+    final boolean _copyComponents;
+
+    private ContainerPlan(IType toType, IType fromType, ConversionPlan componentPlan) {
+      super(toType, fromType);
+      _componentPlan = componentPlan;
+      _copyComponents = !(componentPlan instanceof ValuePlan && ((ValuePlan) componentPlan)._assignable);
+    }
+
+    @Override
+    void addIncompatibilities(String path, List<String> incompatibilities, Set<ConversionPlan> visited) {
+      if (visited.add(this)) {
+        _componentPlan.addIncompatibilities(path + "[]", incompatibilities, visited);
+      }
+    }
+  }
+
+  private static class ListPlan extends ContainerPlan {
+    private ListPlan(IType toType, IType fromType, ConversionPlan componentPlan) {
+      super(toType, fromType, componentPlan);
+    }
+
+    @Override
+    Object convert(Object from, IdentityHashMap<Object, Object> copies) {
+      if (from == null) {
+        return null;
+      }
+      Object previous = copies.get(from);
+      if (previous != null) {
+        return previous;
+      }
+      JsonList copy = new JsonList(getToType());
+      copies.put(from, copy);
+      if (!_copyComponents) {
+        copy.addAll((JsonList) from);
+      } else {
+        for (Object o : (JsonList) from) {
+          copy.add(_componentPlan.convert(o, copies));
+        }
+      }
+      return copy;
+    }
+  }
+
+  private static class MapPlan extends ContainerPlan {
+    private MapPlan(IType toType, IType fromType, ConversionPlan componentPlan) {
+      super(toType, fromType, componentPlan);
+    }
+
+    @Override
+    Object convert(Object from, IdentityHashMap<Object, Object> copies) {
+      if (from == null) {
+        return null;
+      }
+      Object previous = copies.get(from);
+      if (previous != null) {
+        return previous;
+      }
+      JsonMap copy = new JsonMap(getToType());
+      copies.put(from, copy);
+      for (Object o : ((JsonMap) from).entrySet()) {
+        Map.Entry entry = (Map.Entry) o;
+        Object value = _copyComponents ? _componentPlan.convert(entry.getValue(), copies) : entry.getValue();
+        copy.put((String) entry.getKey(), value);
+      }
+      return copy;
+    }
+  }
+
+  /**
+   * Copies the writable properties the two JSchema types share, by slot ordinal where the maps use
+   * the types' slot layouts.
+   */
+  private static class ObjectPlan extends ConversionPlan {
+    private String[] _propertyNames;
+    private String[] _toSlots;
+    private String[] _fromSlots;
+    private int[] _toOrdinals;
+    private int[] _fromOrdinals;
+    private boolean[] _primitiveSlots;
+    private ConversionPlan[] _slotPlans;
+
+    private ObjectPlan(IJSchemaType toType, IJSchemaType fromType) {
+      super(toType, fromType);
+    }
+
+    private void init(Cache cache, Map<List<IType>, ConversionPlan> compiled) {
+      IJSchemaType toType = (IJSchemaType) getToType();
+      IJSchemaType fromType = (IJSchemaType) getFromType();
+      List<String> propertyNames = new ArrayList<String>();
+      List<String> toSlots = new ArrayList<String>();
+      List<String> fromSlots = new ArrayList<String>();
+      List<ConversionPlan> slotPlans = new ArrayList<ConversionPlan>();
+      for (IPropertyInfo property : toType.getTypeInfo().getProperties()) {
+        if (property.isWritable()) {
+          String toSlotName = toType.getJsonSlotForPropertyName(property.getName());
+          String fromSlotName = fromType.getJsonSlotForPropertyName(property.getName());
+          if (toSlotName != null && fromSlotName != null) {
+            propertyNames.add(property.getName());
+            toSlots.add(toSlotName);
+            fromSlots.add(fromSlotName);
+            slotPlans.add(compile(toType.getTypeForJsonSlot(toSlotName), fromType.getTypeForJsonSlot(fromSlotName), cache, compiled));
+          }
+        }
+      }
+      _propertyNames = propertyNames.toArray(new String[propertyNames.size()]);
+      _toSlots = toSlots.toArray(new String[toSlots.size()]);
+      _fromSlots = fromSlots.toArray(new String[fromSlots.size()]);
+      _slotPlans = slotPlans.toArray(new ConversionPlan[slotPlans.size()]);
+      _toOrdinals = ordinals(toType.getSlotLayout(), _toSlots);
+      _fromOrdinals = ordinals(fromType.getSlotLayout(), _fromSlots);
+      _primitiveSlots = new boolean[_toSlots.length];
+      for (int i = 0; i < _toSlots.length; i++) {
+        if (_toOrdinals[i] >= 0 && _fromOrdinals[i] >= 0 &&
+            _slotPlans[i] instanceof ValuePlan && ((ValuePlan) _slotPlans[i])._assignable) {
+          int kind = fromType.getSlotLayout().getKind(_fromOrdinals[i]);
+          _primitiveSlots[i] = (kind == JsonSlotLayout.LONG_SLOT || kind == JsonSlotLayout.DATE_SLOT) &&
+                               toType.getSlotLayout().getKind(_toOrdinals[i]) == kind;
+        }
+      }
+    }
+
+    private static int[] ordinals(JsonSlotLayout layout, String[] slots) {
+      int[] ordinals = new int[slots.length];
+      for (int i = 0; i < slots.length; i++) {
+        ordinals[i] = layout == null ? -1 : layout.getOrdinal(slots[i]);
+      }
+      return ordinals;
+    }
+
+    @Override
+    Object convert(Object from, IdentityHashMap<Object, Object> copies) {
+      if (from == null) {
+        return null;
+      }
+      Object previous = copies.get(from);
+      if (previous != null) {
+        return previous;
+      }
+      JsonMap fromMap = (JsonMap) from;
+      JsonMap to = new JsonMap(getToType());
+      copies.put(from, to);
+      JsonSlotLayout toLayout = to.getSlotLayout();
+      boolean fromSlotted = fromMap.getSlotLayout() != null && fromMap.getSlotLayout() == ((IJSchemaType) getFromType()).getSlotLayout();
+      for (int i = 0; i < _toSlots.length; i++) {
+        if (fromSlotted && toLayout != null && _primitiveSlots[i]) {
+          // int and date values are copied unboxed; anything else reads as the default
+          long primitive = fromMap.getLongSlot(_fromOrdinals[i], Long.MIN_VALUE);
+          if (primitive != Long.MIN_VALUE) {
+            to.putLongSlot(_toOrdinals[i], primitive);
+            continue;
+          }
+        }
+        Object fromValue = fromSlotted && _fromOrdinals[i] >= 0 ? fromMap.getSlot(_fromOrdinals[i]) : fromMap.get(_fromSlots[i]);
+        Object value;
+        try {
+          value = _slotPlans[i].convert(fromValue, copies);
+        } catch (ConversionException e) {
+          e._path.addFirst(_propertyNames[i]);
+          throw e;
+        }
+        if (toLayout != null && _toOrdinals[i] >= 0) {
+          to.putSlot(_toOrdinals[i], value);
+        } else {
+          to.put(_toSlots[i], value);
+        }
+      }
+      return to;
+    }
+
+    @Override
+    void addIncompatibilities(String path, List<String> incompatibilities, Set<ConversionPlan> visited) {
+      if (visited.add(this)) {
+        for (int i = 0; i < _slotPlans.length; i++) {
+          _slotPlans[i].addIncompatibilities(path.isEmpty() ? _propertyNames[i] : path + "." + _propertyNames[i], incompatibilities, visited);
+        }
+      }
+    }
+  }
+}
@@ -5,6 +5,7 @@ import gw.util.GosuEscapeUtil;
 import gw.util.GosuStringUtil;
 import org.jschema.model.JsonList;
 import org.jschema.model.JsonMap;
+import org.jschema.model.JsonObject;
 import org.jschema.parser.JSONParser;
 import org.jschema.parser.JSchemaParser;
 import org.jschema.typeloader.IJSchemaType;
@@ -27,6 +28,8 @@ public class JSchemaUtils {
   public static final String JSCHEMA_MAP_KEY = "map_of";
   public static final String JSCHEMA_FUNCTIONS_KEY = "functions";
 
+  private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
   //TODO use Character.isJavaIdentifierPart() to scrub bad characters?
   public static String convertJSONStringToGosuIdentifier(String name) {
     return convertJSONStringToGosuIdentifier(name, true);
@@ -99,6 +102,26 @@ public class JSchemaUtils {
     return(retVal);
   }
 
+  /**
+   * Parses without maintaining parent pointers, for documents that are read and discarded.
+   * {@link JsonObject#getParent()} still works on the result but walks the tree on first use.
+   */
+  public static Object parseJsonDetached(String json, IType rootType)
+  {
+    JSONParser parser = new JSONParser(json, rootType).withDetachedParents();
+    Object retVal = parser.parseJSONFragment();
+    return(retVal);
+  }
+
+  /**
+   * Parses into a frozen tree; see {@link JsonObject#freeze()}.
+   */
+  public static Object parseJsonFrozen(String json, IType rootType)
+  {
+    Object retVal = parseJsonDetached(json, rootType);
+    return retVal instanceof JsonObject ? ((JsonObject) retVal).freeze() : retVal;
+  }
+
   public static Object parseJSchema(String jschema)
   {
     JSchemaParser parser = new JSchemaParser(jschema);
@@ -107,129 +130,277 @@ public class JSchemaUtils {
   }
 
 
+  public static byte[] serializeBinary(Object json) {
+    return JsonBinaryWriter.serialize(json, JsonBinaryWriter.typeOf(json));
+  }
+
+  public static byte[] serializeBinary(Object json, IType rootType) {
+    return JsonBinaryWriter.serialize(json, rootType);
+  }
+
+  public static Object parseBinary(byte[] bytes) {
+    return JsonBinaryReader.parse(bytes, null);
+  }
+
+  public static Object parseBinary(byte[] bytes, IType rootType) {
+    return JsonBinaryReader.parse(bytes, rootType);
+  }
+
   public static String serializeJson(Object json) {
     return serializeJson(json, -1);
   }
 
   public static String serializeJson(Object json, int indent) {
-    return buildJSON(new StringBuilder(), json, indent, 0).toString();
+    StringBuilder stringBuilder = new StringBuilder();
+    buildJSON(stringBuilder, json, indent >= 0 ? new Indentation(indent) : null, 0);
+    return stringBuilder.toString();
   }
 
-  private static StringBuilder buildJSON(StringBuilder stringBuilder, Object json, int indent, int depth) {
+  // a null indentation means compact output; pretty printing only adds the cached newline strings
+  private static void buildJSON(StringBuilder stringBuilder, Object json, Indentation indentation, int depth) {
     if (json instanceof String) {
-      stringBuilder.append("\"");
+      stringBuilder.append('\"');
       appendCharacters(stringBuilder, (String) json);
-      return stringBuilder.append('\"');
+      stringBuilder.append('\"');
     } else if (json instanceof Integer ||
       json instanceof Double ||
       json instanceof Long ||
       json instanceof BigDecimal ||
       json instanceof BigInteger) {
-      return stringBuilder.append(json.toString());
+      stringBuilder.append(json.toString());
     } else if (json instanceof Boolean) {
-      return stringBuilder.append(json.toString());
+      stringBuilder.append(((Boolean) json).booleanValue());
     } else if (json instanceof Date) {
-      return buildJSON(stringBuilder, serializeDate((Date) json), indent, depth);
+      buildJSON(stringBuilder, serializeDate((Date) json), indentation, depth);
     } else if (json instanceof URI) {
-      return buildJSON(stringBuilder, json.toString(), indent, depth);
+      buildJSON(stringBuilder, json.toString(), indentation, depth);
     } else if (json instanceof IEnumValue) {
-      return buildJSON(stringBuilder, ((IEnumValue) json).getValue(), indent, depth);
+      buildJSON(stringBuilder, ((IEnumValue) json).getValue(), indentation, depth);
     } else if (json == null) {
-      return stringBuilder.append("null");
+      stringBuilder.append("null");
     } else if (json instanceof List) {
-      stringBuilder.append("[");
       List lst = (List) json;
+      stringBuilder.append('[');
+      boolean lastWasObject = false;
       for (int i = 0, lstSize = lst.size(); i < lstSize; i++) {
         if (i != 0) {
           stringBuilder.append(", ");
         }
         Object listValue = lst.get(i);
-        if (listValue instanceof Map && indent >= 0 && ((Map) listValue).size() > 0) {
-          stringBuilder.append("\n");
-          addWhitespace(stringBuilder, indent, depth);
+        if (indentation != null) {
+          lastWasObject = listValue instanceof Map && !((Map) listValue).isEmpty();
+          if (lastWasObject) {
+            stringBuilder.append(indentation.newline(depth + 1));
+          }
         }
-        buildJSON(stringBuilder, listValue, indent, depth + 1);
+        buildJSON(stringBuilder, listValue, indentation, depth + 1);
       }
-      if (indent >= 0 && lst.size() > 0 && lst.get(lst.size() - 1) instanceof Map && ((Map) lst.get(lst.size() - 1)).size() > 0) {
-        stringBuilder.append("\n");
-        addWhitespace(stringBuilder, indent, depth - 1);
+      if (lastWasObject) {
+        stringBuilder.append(indentation.newline(depth));
       }
-      return stringBuilder.append("]");
+      stringBuilder.append(']');
     } else if (json instanceof Map) {
       Map map = (Map) json;
-      Set<Map.Entry> set = map.entrySet();
-      stringBuilder.append("{");
-      if (map.size() > 0 && indent >= 0) {
-        stringBuilder.append("\n");
-      }
-      for (Iterator<Map.Entry> iterator = set.iterator(); iterator.hasNext(); ) {
-        Map.Entry entry = iterator.next();
+      String entryNewline = indentation == null ? null : indentation.newline(depth + 1);
+      boolean first = true;
+      stringBuilder.append('{');
+      for (Object o : map.entrySet()) {
+        Map.Entry entry = (Map.Entry) o;
         Object key = entry.getKey();
         if (!(key instanceof String)) {
           throw new IllegalArgumentException("All keys in a map must be of type string, but found : " + json);
         }
-        addWhitespace(stringBuilder, indent, depth);
-        buildJSON(stringBuilder, entry.getKey().toString(), indent, depth);
-        stringBuilder.append(" : ");
-        buildJSON(stringBuilder, entry.getValue(), indent, depth + 1);
-        if (iterator.hasNext()) {
+        if (first) {
+          first = false;
+        } else {
           stringBuilder.append(", ");
-          if (indent >= 0) {
-            stringBuilder.append("\n");
-          }
         }
+        if (entryNewline != null) {
+          stringBuilder.append(entryNewline);
+        }
+        stringBuilder.append('\"');
+        appendCharacters(stringBuilder, (String) key);
+        stringBuilder.append("\" : ");
+        buildJSON(stringBuilder, entry.getValue(), indentation, depth + 1);
       }
-      if (set.size() > 0 && indent >= 0) {
-        stringBuilder.append("\n");
-        addWhitespace(stringBuilder, indent, depth - 1);
+      if (!first && indentation != null) {
+        stringBuilder.append(indentation.newline(depth));
       }
-      return stringBuilder.append("}");
+      stringBuilder.append('}');
     } else {
-      return buildJSON(stringBuilder, json.toString(), indent, depth);
+      buildJSON(stringBuilder, json.toString(), indentation, depth);
     }
   }
 
-  private static void addWhitespace(StringBuilder stringBuilder, int indent, int depth) {
-    if (indent > 0) {
-      int fullindent = indent * (depth + 1);
-      while (fullindent-- > 0) {
-        stringBuilder.append(" ");
+  private static final class Indentation {
+    private final int _indent;
+    private String[] _newlines = new String[8];
+
+    private Indentation(int indent) {
+      _indent = indent;
+    }
+
+    // a newline followed by the indentation for the given depth, built once per depth
+    private String newline(int depth) {
+      if (depth >= _newlines.length) {
+        _newlines = Arrays.copyOf(_newlines, Math.max(depth + 1, _newlines.length * 2));
       }
+      String newline = _newlines[depth];
+      if (newline == null) {
+        char[] chars = new char[1 + _indent * depth];
+        Arrays.fill(chars, ' ');
+        chars[0] = '\n';
+        newline = new String(chars);
+        _newlines[depth] = newline;
+      }
+      return newline;
     }
   }
 
+  /**
+   * Serializes the given JSON in canonical form: object keys sorted, numbers normalized, dates in
+   * UTC and no whitespace, so that equal trees always produce identical strings.
+   */
+  public static String serializeCanonicalJson(Object json) {
+    return buildCanonicalJSON(new StringBuilder(), json).toString();
+  }
+
+  private static StringBuilder buildCanonicalJSON(StringBuilder stringBuilder, Object json) {
+    if (json instanceof String) {
+      stringBuilder.append('\"');
+      appendCharacters(stringBuilder, (String) json);
+      return stringBuilder.append('\"');
+    } else if (json instanceof Integer ||
+      json instanceof Double ||
+      json instanceof Long ||
+      json instanceof BigDecimal ||
+      json instanceof BigInteger) {
+      BigDecimal decimal = toCanonicalDecimal((Number) json);
+      if (decimal == null) {
+        throw new IllegalArgumentException("Cannot canonicalize non-finite number : " + json);
+      }
+      return stringBuilder.append(canonicalNumber(decimal));
+    } else if (json instanceof Boolean) {
+      return stringBuilder.append(json.toString());
+    } else if (json instanceof Date) {
+      return buildCanonicalJSON(stringBuilder, serializeDate((Date) json, UTC));
+    } else if (json instanceof URI) {
+      return buildCanonicalJSON(stringBuilder, json.toString());
+    } else if (json instanceof IEnumValue) {
+      return buildCanonicalJSON(stringBuilder, ((IEnumValue) json).getValue());
+    } else if (json == null) {
+      return stringBuilder.append("null");
+    } else if (json instanceof List) {
+      stringBuilder.append('[');
+      List lst = (List) json;
+      for (int i = 0, lstSize = lst.size(); i < lstSize; i++) {
+        if (i != 0) {
+          stringBuilder.append(',');
+        }
+        buildCanonicalJSON(stringBuilder, lst.get(i));
+      }
+      return stringBuilder.append(']');
+    } else if (json instanceof Map) {
+      Map map = (Map) json;
+      String[] keys = new String[map.size()];
+      int i = 0;
+      for (Object key : map.keySet()) {
+        if (!(key instanceof String)) {
+          throw new IllegalArgumentException("All keys in a map must be of type string, but found : " + json);
+        }
+        keys[i++] = (String) key;
+      }
+      Arrays.sort(keys);
+      stringBuilder.append('{');
+      for (int j = 0; j < keys.length; j++) {
+        if (j != 0) {
+          stringBuilder.append(',');
+        }
+        buildCanonicalJSON(stringBuilder, keys[j]);
+        stringBuilder.append(':');
+        buildCanonicalJSON(stringBuilder, map.get(keys[j]));
+      }
+      return stringBuilder.append('}');
+    } else {
+      return buildCanonicalJSON(stringBuilder, json.toString());
+    }
+  }
+
+  /**
+   * @return the number as a BigDecimal with trailing zeros stripped, or null if it is not finite
+   */
+  static BigDecimal toCanonicalDecimal(Number number) {
+    BigDecimal decimal;
+    if (number instanceof BigDecimal) {
+      decimal = (BigDecimal) number;
+    } else if (number instanceof BigInteger) {
+      decimal = new BigDecimal((BigInteger) number);
+    } else if (number instanceof Double) {
+      double d = number.doubleValue();
+      if (Double.isNaN(d) || Double.isInfinite(d)) {
+        return null;
+      }
+      decimal = BigDecimal.valueOf(d);
+    } else {
+      decimal = BigDecimal.valueOf(number.longValue());
+    }
+    if (decimal.signum() == 0) {
+      return BigDecimal.ZERO;
+    }
+    return decimal.stripTrailingZeros();
+  }
+
+  private static String canonicalNumber(BigDecimal decimal) {
+    // integral values print as plain digits unless they are absurdly large
+    if (decimal.scale() <= 0 && decimal.precision() - decimal.scale() <= 21) {
+      return decimal.toBigIntegerExact().toString();
+    }
+    return decimal.toString();
+  }
+
+  private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
   private static void appendCharacters(StringBuilder result, String value) {
-    for (int i = 0; i < value.length(); i++) {
+    int length = value.length();
+    int start = 0;
+    for (int i = 0; i < length; i++) {
       char c = value.charAt(i);
+      String escape;
       if (c == '\"') {
-        result.append("\\\"");
+        escape = "\\\"";
       } else if (c == '\\') {
-        result.append("\\\\");
+        escape = "\\\\";
       } else if (c == '\b') {
-        result.append("\\b");
+        escape = "\\b";
       } else if (c == '\f') {
-        result.append("\\f");
+        escape = "\\f";
       } else if (c == '\n') {
-        result.append("\\n");
+        escape = "\\n";
       } else if (c == '\r') {
-        result.append("\\r");
+        escape = "\\r";
       } else if (c == '\t') {
-        result.append("\\t");
-      } else if (c > 0xfff) {
-        result.append("\\u" + hex(c));
-      } else if (c > 0xff) {
-        result.append("\\u0" + hex(c));
+        escape = "\\t";
       } else if (c > 0x7f) {
-        result.append("\\u00" + hex(c));
+        escape = null;
+      } else {
+        continue;
+      }
+      // copy the unescaped run in one go
+      result.append(value, start, i);
+      start = i + 1;
+      if (escape != null) {
+        result.append(escape);
       } else {
-        result.append(c);
+        result.append('\\').append('u')
+          .append(HEX_DIGITS[(c >> 12) & 0xF])
+          .append(HEX_DIGITS[(c >> 8) & 0xF])
+          .append(HEX_DIGITS[(c >> 4) & 0xF])
+          .append(HEX_DIGITS[c & 0xF]);
       }
     }
+    result.append(value, start, length);
   }
 
-  private static String hex(char c) {
-    return Integer.toHexString(c).toUpperCase();
-  }
 
   public static Object convertJsonToJSchema(Object json) {
     if (json instanceof List && !((List)json).isEmpty()) {
@@ -359,9 +530,14 @@ public class JSchemaUtils {
   }
 
   public static String serializeDate(Date d) {
-    GregorianCalendar calendar = new GregorianCalendar();
+    return serializeDate(d, TimeZone.getDefault());
+  }
+
+  public static String serializeDate(Date d, TimeZone timeZone) {
+    GregorianCalendar calendar = new GregorianCalendar(timeZone);
     calendar.setTime(d);
     DateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
+    df.setTimeZone(timeZone);
     String text = df.format(d);
     int i = calendar.get(Calendar.MILLISECOND);
     String milliString = "";
@@ -383,102 +559,7 @@ public class JSchemaUtils {
   }
 
   public static Object cloneToType(IJSchemaType targetType, JsonMap fromMap, IJSchemaType fromType) {
-    return deepCopy(new Stack<String>(), targetType, fromMap, fromType, new IdentityHashMap<Object, Object>());
-  }
-
-  private static Object deepCopy(Stack<String> propertyPath, IType toType, Object from, IType fromType, IdentityHashMap<Object, Object> serializationMap) {
-
-    if (from == null) {
-      return from;
-    }
-    
-    // if we've already copied it, just return it
-    Object previousValue = serializationMap.get(from);
-    if (previousValue != null) {
-      return previousValue;
-    }
-
-    if (toType instanceof IEnumType && fromType instanceof IEnumType) {
-      String code = ((IEnumValue) from).getCode();
-      IEnumValue enumValue = ((IEnumType) toType).getEnumValue(code);
-      if (enumValue != null) {
-        return enumValue;
-      } else {
-        throw new IllegalArgumentException("Enum mismatch at path : \'" + makePath(propertyPath) + "\', Didn't find Enum value '" + code + "' in Enum " + toType.getName());
-      }
-    } else if (toType instanceof IJSchemaType && fromType instanceof IJSchemaType) {
-      return deepCopyJSchemaObject(propertyPath, (IJSchemaType) toType, (JsonMap) from, (IJSchemaType) fromType, serializationMap);
-    } else if (TypeSystem.get(JsonList.class).isAssignableFrom(toType) &&
-      TypeSystem.get(JsonList.class).isAssignableFrom(fromType)) {
-      return deepCopyJsonList(propertyPath, toType, (JsonList) from, fromType, serializationMap);
-    } else if (TypeSystem.get(JsonMap.class).isAssignableFrom(toType) &&
-      TypeSystem.get(JsonMap.class).isAssignableFrom(fromType)) {
-      return deepCopyJsonMap(propertyPath, toType, (JsonMap) from, fromType, serializationMap);
-    } else {
-      if (toType.isAssignableFrom(TypeSystem.getFromObject(from))) {
-        return from;
-      } else {
-        throw new IllegalArgumentException("Type mismatch at path : \'" + makePath(propertyPath) + "\', Expected " + toType.getName() + " but found " + fromType.getName());
-      }
-    }
-  }
-
-  private static Object deepCopyJsonMap(Stack<String> propertyPath, IType toType, JsonMap from, IType fromType, IdentityHashMap<Object,Object> serializationMap) {
-    IType toComponent = toType.getTypeParameters()[0];
-    IType fromComponent = fromType.getTypeParameters()[0];
-    JsonMap copy = new JsonMap(toType);
-    serializationMap.put(from, copy);
-    for (Object o : from.keySet()) {
-      copy.put((String) o, deepCopy(propertyPath, toComponent, from.get(o), fromComponent, serializationMap));
-    }
-    return copy;
-  }
-
-  private static Object deepCopyJsonList(Stack<String> propertyPath, IType toType, JsonList from, IType fromType, IdentityHashMap<Object,Object> serializationMap) {
-    IType toComponent = toType.getTypeParameters()[0];
-    IType fromComponent = fromType.getTypeParameters()[0];
-    JsonList copy = new JsonList(toType);
-    serializationMap.put(from, copy);
-    for (Object o : from) {
-      copy.add(deepCopy(propertyPath, toComponent, o, fromComponent, serializationMap));
-    }
-    return copy;
-  }
-
-  private static Object deepCopyJSchemaObject(Stack<String> propertyPath, IJSchemaType toType, JsonMap from, IJSchemaType fromType, IdentityHashMap<Object, Object> serializationMap) {
-    JsonMap to = new JsonMap(toType);
-    serializationMap.put(from, to);
-    List<? extends IPropertyInfo> properties = toType.getTypeInfo().getProperties();
-    for (IPropertyInfo property : properties) {
-      if (property.isWritable()) {
-        String toSlotName = toType.getJsonSlotForPropertyName(property.getName());
-        String fromSlotName = fromType.getJsonSlotForPropertyName(property.getName());
-        IType fromPropertyType = fromType.getTypeForJsonSlot(fromSlotName);
-        if (toSlotName != null && fromSlotName != null) {
-          IType toPropertyType = toType.getTypeForJsonSlot(toSlotName);
-          Object fromSlotValue = from.get(fromSlotName);
-          propertyPath.push(property.getName());
-          try {
-            to.put(toSlotName, deepCopy(propertyPath, toPropertyType, fromSlotValue, fromPropertyType, serializationMap));
-          } finally {
-            propertyPath.pop();
-          }
-        }
-      }
-    }
-    return to;
-  }
-
-  private static String makePath(Stack<String> propertyPath) {
-    StringBuilder sb = new StringBuilder();
-    for (Iterator<String> iterator = propertyPath.iterator(); iterator.hasNext(); ) {
-      String s = iterator.next();
-      sb.append(s);
-      if (iterator.hasNext()) {
-        sb.append(".");
-      }
-    }
-    return sb.toString();
+    return ConversionPlan.forTypes(targetType, fromType).convert(fromMap);
   }
 
   public static URI parseURI(String s) throws URISyntaxException {
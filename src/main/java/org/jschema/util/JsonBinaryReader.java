@@ -0,0 +1,207 @@
+package org.jschema.util;
+
+import gw.lang.reflect.IEnumType;
+import gw.lang.reflect.IEnumValue;
+import gw.lang.reflect.IType;
+import org.jschema.model.JsonList;
+import org.jschema.model.JsonMap;
+import org.jschema.typeloader.IJSchemaType;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.jschema.util.JsonBinaryWriter.*;
+
+/**
+ * Reads JSON trees written by {@link JsonBinaryWriter}, producing the same model objects as the text
+ * parser does for the given root type.
+ */
+public class JsonBinaryReader {
+
+  private byte[] _bytes;
+  private int _position;
+  private List<String> _keys = new ArrayList<String>();
+  private List<IJSchemaType> _layouts = new ArrayList<IJSchemaType>();
+
+  public JsonBinaryReader(byte[] bytes) {
+    _bytes = bytes;
+  }
+
+  public static Object parse(byte[] bytes, IType rootType) {
+    return new JsonBinaryReader(bytes).read(rootType);
+  }
+
+  public Object read(IType rootType) {
+    int version = readByte();
+    // version 1 streams are the same but for slot layout fingerprints
+    if (version != VERSION && version != 1) {
+      throw new IllegalArgumentException("Unsupported binary JSON version : " + version);
+    }
+    return readValue(rootType);
+  }
+
+  private Object readValue(IType expectedType) {
+    int tag = readByte();
+    switch (tag) {
+      case TAG_NULL:
+        return null;
+      case TAG_TRUE:
+        return Boolean.TRUE;
+      case TAG_FALSE:
+        return Boolean.FALSE;
+      case TAG_INT:
+        return unZigZag(readVarLong());
+      case TAG_DECIMAL:
+        int scale = (int) unZigZag(readVarLong());
+        return new BigDecimal(new BigInteger(readBytes()), scale);
+      case TAG_DOUBLE:
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+          bits = (bits << 8) | readByte();
+        }
+        return Double.longBitsToDouble(bits);
+      case TAG_BIG_INTEGER:
+        return new BigInteger(readBytes());
+      case TAG_STRING:
+        return readString();
+      case TAG_DATE:
+        return new Date(unZigZag(readVarLong()));
+      case TAG_URI:
+        return URI.create(readString());
+      case TAG_ENUM:
+        if (!(expectedType instanceof IEnumType)) {
+          throw new IllegalArgumentException("Found an enum ordinal where " + expectedType + " was expected");
+        }
+        List<IEnumValue> values = ((IEnumType) expectedType).getEnumValues();
+        long ordinal = readVarLong();
+        if (ordinal < 0 || ordinal >= values.size()) {
+          throw new IllegalArgumentException("Enum ordinal " + ordinal + " is out of range for " + expectedType.getName());
+        }
+        return values.get((int) ordinal);
+      case TAG_LIST:
+        return readList(expectedType);
+      case TAG_MAP:
+        return readMap(expectedType, false);
+      case TAG_SLOT_MAP:
+        return readMap(expectedType, true);
+      default:
+        throw new IllegalArgumentException("Bad binary JSON tag " + tag + " at offset " + (_position - 1));
+    }
+  }
+
+  private JsonList readList(IType expectedType) {
+    int size = (int) readVarLong();
+    IType componentType = componentType(expectedType);
+    JsonList lst = new JsonList(expectedType);
+    for (int i = 0; i < size; i++) {
+      lst.add(readValue(componentType));
+    }
+    return lst;
+  }
+
+  private JsonMap readMap(IType expectedType, boolean slotted) {
+    int size = (int) readVarLong();
+    IJSchemaType schemaType = schemaType(expectedType);
+    IType componentType = schemaType == null ? componentType(expectedType) : null;
+    if (slotted) {
+      if (schemaType == null || schemaType.getSlotLayout() == null) {
+        throw new IllegalArgumentException("Found an object with slots where " + expectedType + " was expected");
+      }
+      readLayout(schemaType);
+    }
+    JsonMap map = new JsonMap(expectedType);
+    for (int i = 0; i < size; i++) {
+      long code = readVarLong();
+      String key;
+      IType valueType = componentType;
+      if ((code & 1) != 0) {
+        if (schemaType == null) {
+          throw new IllegalArgumentException("Found a slot ordinal where " + expectedType + " was expected");
+        }
+        key = schemaType.getJsonSlotForOrdinal((int) (code >>> 1));
+        if (key == null) {
+          throw new IllegalArgumentException("Slot ordinal " + (code >>> 1) + " is out of range for " + schemaType.getName());
+        }
+        valueType = schemaType.getTypeForJsonSlot(key);
+      } else if (code == 0) {
+        key = readString();
+        _keys.add(key);
+      } else {
+        long keyIndex = (code >>> 1) - 1;
+        if (keyIndex >= _keys.size()) {
+          throw new IllegalArgumentException("Bad binary JSON key reference " + keyIndex + " at offset " + _position);
+        }
+        key = _keys.get((int) keyIndex);
+      }
+      map.put(key, readValue(valueType));
+    }
+    return map;
+  }
+
+  private void readLayout(IJSchemaType schemaType) {
+    long code = readVarLong();
+    if (code == 0) {
+      if (readVarLong() != layoutFingerprint(schemaType)) {
+        throw new IllegalArgumentException("Binary JSON was written with different slots for " + schemaType.getName());
+      }
+      _layouts.add(schemaType);
+    } else if (code > _layouts.size() || _layouts.get((int) code - 1) != schemaType) {
+      throw new IllegalArgumentException("Binary JSON was written for a different type than " + schemaType.getName());
+    }
+  }
+
+  private static long unZigZag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private String readString() {
+    int length = readLength();
+    String value = new String(_bytes, _position, length, StandardCharsets.UTF_8);
+    _position += length;
+    return value;
+  }
+
+  private byte[] readBytes() {
+    int length = readLength();
+    byte[] bytes = new byte[length];
+    System.arraycopy(_bytes, _position, bytes, 0, length);
+    _position += length;
+    return bytes;
+  }
+
+  /**
+   * @return the length of a string or byte array, which must fit in the rest of the input
+   */
+  private int readLength() {
+    long length = readVarLong();
+    if (length > _bytes.length - _position) {
+      throw new IllegalArgumentException("Unexpected end of binary JSON at offset " + _position);
+    }
+    return (int) length;
+  }
+
+  private long readVarLong() {
+    long value = 0;
+    int shift = 0;
+    while (true) {
+      int b = readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+      shift += 7;
+    }
+  }
+
+  private int readByte() {
+    if (_position >= _bytes.length) {
+      throw new IllegalArgumentException("Unexpected end of binary JSON at offset " + _position);
+    }
+    return _bytes[_position++] & 0xFF;
+  }
+}
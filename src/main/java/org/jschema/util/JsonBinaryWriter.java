@@ -0,0 +1,312 @@
+package org.jschema.util;
+
+import gw.lang.reflect.IEnumType;
+import gw.lang.reflect.IEnumValue;
+import gw.lang.reflect.IType;
+import gw.lang.reflect.TypeSystem;
+import org.jschema.model.JsonList;
+import org.jschema.model.JsonMap;
+import org.jschema.model.JsonObject;
+import org.jschema.model.JsonSlotLayout;
+import org.jschema.typeloader.IJSchemaType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Writes JSON trees in a compact binary format, read back by {@link JsonBinaryReader}.
+ *
+ * Every value starts with a tag byte.  Ints and dates are zig-zag varints, strings are UTF-8 with a
+ * varint length, and object keys are written once and referenced by index afterwards.  Objects whose
+ * expected type is a JSchema type write slot ordinals instead of keys and enums as ordinals, so the
+ * reader must be given the same root type as the writer.  The first such object of each type in a
+ * stream also carries a fingerprint of the type's slots and the values of its enums, so that data
+ * written before the schema changed fails to read rather than landing in the wrong slots or values.
+ */
+public class JsonBinaryWriter {
+
+  static final int VERSION = 2;
+
+  static final int TAG_NULL = 0;
+  static final int TAG_TRUE = 1;
+  static final int TAG_FALSE = 2;
+  static final int TAG_INT = 3;
+  static final int TAG_DECIMAL = 4;
+  static final int TAG_DOUBLE = 5;
+  static final int TAG_STRING = 6;
+  static final int TAG_DATE = 7;
+  static final int TAG_URI = 8;
+  static final int TAG_ENUM = 9;
+  static final int TAG_LIST = 10;
+  static final int TAG_MAP = 11;
+  static final int TAG_BIG_INTEGER = 12;
+  static final int TAG_SLOT_MAP = 13;
+
+  private byte[] _buffer = new byte[256];
+  private int _length;
+  private Map<String, Integer> _keys = new HashMap<String, Integer>();
+  private Map<IJSchemaType, Integer> _layouts = new IdentityHashMap<IJSchemaType, Integer>();
+
+  public static byte[] serialize(Object json, IType rootType) {
+    JsonBinaryWriter writer = new JsonBinaryWriter();
+    writer.write(json, rootType);
+    return writer.toByteArray();
+  }
+
+  public void write(Object json, IType rootType) {
+    writeByte(VERSION);
+    writeValue(json, rootType);
+  }
+
+  public byte[] toByteArray() {
+    return Arrays.copyOf(_buffer, _length);
+  }
+
+  public void writeTo(OutputStream out) throws IOException {
+    out.write(_buffer, 0, _length);
+  }
+
+  private void writeValue(Object json, IType expectedType) {
+    if (json instanceof String) {
+      writeByte(TAG_STRING);
+      writeString((String) json);
+    } else if (json instanceof Long || json instanceof Integer) {
+      writeByte(TAG_INT);
+      writeVarLong(zigZag(((Number) json).longValue()));
+    } else if (json instanceof BigDecimal) {
+      BigDecimal decimal = (BigDecimal) json;
+      writeByte(TAG_DECIMAL);
+      writeVarLong(zigZag(decimal.scale()));
+      writeBytes(decimal.unscaledValue().toByteArray());
+    } else if (json instanceof Double) {
+      writeByte(TAG_DOUBLE);
+      long bits = Double.doubleToLongBits((Double) json);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        writeByte((int) (bits >>> shift));
+      }
+    } else if (json instanceof BigInteger) {
+      writeByte(TAG_BIG_INTEGER);
+      writeBytes(((BigInteger) json).toByteArray());
+    } else if (json instanceof Boolean) {
+      writeByte(((Boolean) json) ? TAG_TRUE : TAG_FALSE);
+    } else if (json instanceof Date) {
+      writeByte(TAG_DATE);
+      writeVarLong(zigZag(((Date) json).getTime()));
+    } else if (json instanceof URI) {
+      writeByte(TAG_URI);
+      writeString(json.toString());
+    } else if (json instanceof IEnumValue) {
+      writeEnum((IEnumValue) json, expectedType);
+    } else if (json == null) {
+      writeByte(TAG_NULL);
+    } else if (json instanceof List) {
+      List lst = (List) json;
+      IType componentType = componentType(expectedType);
+      int size = lst.size();
+      writeByte(TAG_LIST);
+      writeVarLong(size);
+      for (int i = 0; i < size; i++) {
+        writeValue(lst.get(i), componentType);
+      }
+    } else if (json instanceof Map) {
+      writeMap((Map<?, ?>) json, expectedType);
+    } else {
+      writeByte(TAG_STRING);
+      writeString(json.toString());
+    }
+  }
+
+  private void writeEnum(IEnumValue value, IType expectedType) {
+    if (expectedType instanceof IEnumType) {
+      List<IEnumValue> values = ((IEnumType) expectedType).getEnumValues();
+      int ordinal = value.getOrdinal();
+      if (ordinal >= 0 && ordinal < values.size() && values.get(ordinal).getValue().equals(value.getValue())) {
+        writeByte(TAG_ENUM);
+        writeVarLong(ordinal);
+        return;
+      }
+    }
+    writeByte(TAG_STRING);
+    writeString(String.valueOf(value.getValue()));
+  }
+
+  private void writeMap(Map<?, ?> map, IType expectedType) {
+    IJSchemaType schemaType = schemaType(expectedType);
+    IType componentType = schemaType == null ? componentType(expectedType) : null;
+    if (schemaType != null && schemaType.getSlotLayout() != null) {
+      writeByte(TAG_SLOT_MAP);
+      writeVarLong(map.size());
+      writeLayout(schemaType);
+    } else {
+      writeByte(TAG_MAP);
+      writeVarLong(map.size());
+    }
+    if (schemaType != null && map instanceof JsonMap && ((JsonMap) map).getSlotLayout() != null &&
+        ((JsonMap) map).getSlotLayout() == schemaType.getSlotLayout()) {
+      writeSlots((JsonMap<?>) map, schemaType);
+      return;
+    }
+    for (Map.Entry<?, ?> entry : map.entrySet()) {
+      Object key = entry.getKey();
+      if (!(key instanceof String)) {
+        throw new IllegalArgumentException("All keys in a map must be of type string, but found : " + map);
+      }
+      String slot = (String) key;
+      IType valueType = componentType;
+      int ordinal = schemaType == null ? -1 : schemaType.getJsonSlotOrdinal(slot);
+      if (ordinal >= 0) {
+        writeVarLong(((long) ordinal << 1) | 1);
+        valueType = schemaType.getTypeForJsonSlot(slot);
+      } else {
+        writeKey(slot);
+      }
+      writeValue(entry.getValue(), valueType);
+    }
+  }
+
+  /**
+   * Writes the entries of a map stored by the type's slot layout, reading int and date slots without
+   * boxing them.
+   */
+  private void writeSlots(JsonMap<?> map, IJSchemaType schemaType) {
+    JsonSlotLayout layout = map.getSlotLayout();
+    for (String slot : map.keySet()) {
+      int ordinal = layout.getOrdinal(slot);
+      if (ordinal < 0) {
+        writeKey(slot);
+        writeValue(map.get(slot), null);
+        continue;
+      }
+      writeVarLong(((long) ordinal << 1) | 1);
+      int kind = layout.getKind(ordinal);
+      if (kind == JsonSlotLayout.LONG_SLOT || kind == JsonSlotLayout.DATE_SLOT) {
+        // absent, null and non-primitive values read as the default and are written boxed below
+        long value = map.getLongSlot(ordinal, Long.MIN_VALUE);
+        if (value != Long.MIN_VALUE) {
+          writeByte(kind == JsonSlotLayout.LONG_SLOT ? TAG_INT : TAG_DATE);
+          writeVarLong(zigZag(value));
+          continue;
+        }
+      }
+      writeValue(map.getSlot(ordinal), schemaType.getTypeForJsonSlot(slot));
+    }
+  }
+
+  private void writeLayout(IJSchemaType schemaType) {
+    Integer index = _layouts.get(schemaType);
+    if (index != null) {
+      writeVarLong(index + 1);
+    } else {
+      _layouts.put(schemaType, _layouts.size());
+      writeVarLong(0);
+      writeVarLong(layoutFingerprint(schemaType));
+    }
+  }
+
+  /**
+   * @return a hash of the type's slots in ordinal order: the name and kind of each, and for slots
+   * holding enums or lists of enums the enum's values in ordinal order, since enums are written as
+   * ordinals too
+   */
+  static long layoutFingerprint(IJSchemaType schemaType) {
+    JsonSlotLayout layout = schemaType.getSlotLayout();
+    List<Object> slots = new ArrayList<Object>(layout.size());
+    for (int i = 0; i < layout.size(); i++) {
+      List<Object> slot = new ArrayList<Object>(3);
+      slot.add(layout.getSlot(i));
+      slot.add((long) layout.getKind(i));
+      IType slotType = schemaType.getTypeForJsonSlot(layout.getSlot(i));
+      IType enumType = slotType instanceof IEnumType ? slotType : componentType(slotType);
+      if (enumType instanceof IEnumType) {
+        List<Object> values = new ArrayList<Object>();
+        for (IEnumValue value : ((IEnumType) enumType).getEnumValues()) {
+          values.add(String.valueOf(value.getValue()));
+        }
+        slot.add(values);
+      }
+      slots.add(slot);
+    }
+    return JsonContentHash.hash64(slots);
+  }
+
+  private void writeKey(String key) {
+    Integer index = _keys.get(key);
+    if (index != null) {
+      writeVarLong((long) (index + 1) << 1);
+    } else {
+      _keys.put(key, _keys.size());
+      writeVarLong(0);
+      writeString(key);
+    }
+  }
+
+  /**
+   * @return the JSchema type whose slot ordinals describe maps of the given type, or null
+   */
+  static IJSchemaType schemaType(IType type) {
+    if (type instanceof IJSchemaType && !(type instanceof IEnumType)) {
+      return (IJSchemaType) type;
+    }
+    return null;
+  }
+
+  static IType componentType(IType type) {
+    if (type != null && type.isParameterizedType()) {
+      IType genericType = type.getGenericType();
+      if (TypeSystem.get(JsonList.class).equals(genericType) || TypeSystem.get(JsonMap.class).equals(genericType)) {
+        return type.getTypeParameters()[0];
+      }
+    }
+    return null;
+  }
+
+  static IType typeOf(Object json) {
+    if (json instanceof JsonObject) {
+      IType type = ((JsonObject) json).getIntrinsicType();
+      if (type instanceof IJSchemaType || type.isParameterizedType()) {
+        return type;
+      }
+    }
+    return null;
+  }
+
+  private static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private void writeString(String value) {
+    writeBytes(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private void writeBytes(byte[] bytes) {
+    writeVarLong(bytes.length);
+    ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, _buffer, _length, bytes.length);
+    _length += bytes.length;
+  }
+
+  private void writeVarLong(long value) {
+    ensureCapacity(10);
+    while ((value & ~0x7FL) != 0) {
+      _buffer[_length++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    _buffer[_length++] = (byte) value;
+  }
+
+  private void writeByte(int b) {
+    ensureCapacity(1);
+    _buffer[_length++] = (byte) b;
+  }
+
+  private void ensureCapacity(int extra) {
+    if (_length + extra > _buffer.length) {
+      _buffer = Arrays.copyOf(_buffer, Math.max(_buffer.length * 2, _length + extra));
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package org.jschema.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serializes a JSON tree on demand into caller supplied buffers, producing the same text as
+ * {@link JSchemaUtils#serializeJson(Object)}.  Position in the tree is kept on an explicit stack, so
+ * the serializer can be suspended between any two calls to {@link #fill(ByteBuffer)}, e.g. while an
+ * async channel is not writable.
+ *
+ * The output is always ASCII (non-ASCII characters are escaped), so it is valid UTF-8 byte for byte.
+ */
+public class JsonChunkedSerializer {
+
+  private final Object _root;
+  private final List<Frame> _stack = new ArrayList<Frame>();
+  private boolean _started;
+  private String _pending;
+  private int _pendingOffset;
+
+  public JsonChunkedSerializer(Object json) {
+    _root = json;
+  }
+
+  public boolean hasMore() {
+    return !_started || _pending != null || !_stack.isEmpty();
+  }
+
+  /**
+   * Writes as much of the remaining output as fits into the buffer.
+   *
+   * @return the number of bytes written
+   */
+  public int fill(ByteBuffer buffer) {
+    int start = buffer.position();
+    while (buffer.hasRemaining()) {
+      if (_pending != null) {
+        int count = Math.min(buffer.remaining(), _pending.length() - _pendingOffset);
+        for (int i = 0; i < count; i++) {
+          buffer.put((byte) _pending.charAt(_pendingOffset + i));
+        }
+        _pendingOffset += count;
+        if (_pendingOffset == _pending.length()) {
+          _pending = null;
+          _pendingOffset = 0;
+        }
+      } else if (!advance()) {
+        break;
+      }
+    }
+    return buffer.position() - start;
+  }
+
+  private boolean advance() {
+    if (!_started) {
+      _started = true;
+      emitValue("", _root);
+      return true;
+    }
+    if (_stack.isEmpty()) {
+      return false;
+    }
+    Frame frame = _stack.get(_stack.size() - 1);
+    if (frame.list != null) {
+      if (frame.index < frame.list.size()) {
+        emitValue(frame.index == 0 ? "" : ", ", frame.list.get(frame.index++));
+      } else {
+        _stack.remove(_stack.size() - 1);
+        _pending = "]";
+      }
+    } else {
+      if (frame.entries.hasNext()) {
+        Map.Entry entry = frame.entries.next();
+        Object key = entry.getKey();
+        if (!(key instanceof String)) {
+          throw new IllegalArgumentException("All keys in a map must be of type string, but found : " + frame.map);
+        }
+        String prefix = (frame.index++ == 0 ? "" : ", ") + JSchemaUtils.serializeJson(key) + " : ";
+        emitValue(prefix, entry.getValue());
+      } else {
+        _stack.remove(_stack.size() - 1);
+        _pending = "}";
+      }
+    }
+    return true;
+  }
+
+  private void emitValue(String prefix, Object value) {
+    if (value instanceof List) {
+      Frame frame = new Frame();
+      frame.list = (List) value;
+      _stack.add(frame);
+      _pending = prefix + "[";
+    } else if (value instanceof Map) {
+      Frame frame = new Frame();
+      frame.map = (Map) value;
+      frame.entries = frame.map.entrySet().iterator();
+      _stack.add(frame);
+      _pending = prefix + "{";
+    } else {
+      _pending = prefix + JSchemaUtils.serializeJson(value);
+    }
+  }
+
+  private static class Frame {
+    private List list;
+    private Map map;
+    private Iterator<Map.Entry> entries;
+    private int index;
+  }
+}
@@ -0,0 +1,209 @@
+package org.jschema.util;
+
+import gw.lang.reflect.IEnumValue;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming 64/128 bit content hash over JSON trees, computed without building a string and stable
+ * across processes.  As with {@link JSchemaUtils#serializeCanonicalJson(Object)}, key order and number
+ * formatting do not affect the result: map entries are hashed on their own and summed.
+ */
+public class JsonContentHash {
+
+  private static final long C1 = 0x87c37b91114253d5L;
+  private static final long C2 = 0x4cf5ad432745937fL;
+  private static final long SEED1 = 0x9E3779B97F4A7C15L;
+  private static final long SEED2 = 0xC2B2AE3D27D4EB4FL;
+
+  private static final int TAG_NULL = 1;
+  private static final int TAG_TRUE = 2;
+  private static final int TAG_FALSE = 3;
+  private static final int TAG_INT = 4;
+  private static final int TAG_DECIMAL = 5;
+  private static final int TAG_DOUBLE = 6;
+  private static final int TAG_STRING = 7;
+  private static final int TAG_DATE = 8;
+  private static final int TAG_LIST = 9;
+  private static final int TAG_MAP = 10;
+  private static final int TAG_ENTRY = 11;
+
+  private static final BigInteger MIN_LONG = BigInteger.valueOf(Long.MIN_VALUE);
+  private static final BigInteger MAX_LONG = BigInteger.valueOf(Long.MAX_VALUE);
+
+  private long _h1;
+  private long _h2;
+
+  private JsonContentHash() {
+    _h1 = SEED1;
+    _h2 = SEED2;
+  }
+
+  public static long hash64(Object json) {
+    JsonContentHash hash = new JsonContentHash();
+    hash.hashValue(json);
+    return hash.finish1();
+  }
+
+  /**
+   * @return the 128 bit hash as two longs, high bits first
+   */
+  public static long[] hash128(Object json) {
+    JsonContentHash hash = new JsonContentHash();
+    hash.hashValue(json);
+    return new long[]{hash.finish1(), hash.finish2()};
+  }
+
+  private void hashValue(Object json) {
+    if (json instanceof String) {
+      hashString((String) json);
+    } else if (json instanceof Integer ||
+      json instanceof Double ||
+      json instanceof Long ||
+      json instanceof BigDecimal ||
+      json instanceof BigInteger) {
+      hashNumber((Number) json);
+    } else if (json instanceof Boolean) {
+      update(((Boolean) json) ? TAG_TRUE : TAG_FALSE);
+    } else if (json instanceof Date) {
+      update(TAG_DATE);
+      update(((Date) json).getTime());
+    } else if (json instanceof URI) {
+      hashString(json.toString());
+    } else if (json instanceof IEnumValue) {
+      hashValue(((IEnumValue) json).getValue());
+    } else if (json == null) {
+      update(TAG_NULL);
+    } else if (json instanceof List) {
+      List lst = (List) json;
+      int size = lst.size();
+      update(TAG_LIST);
+      update(size);
+      for (int i = 0; i < size; i++) {
+        hashValue(lst.get(i));
+      }
+    } else if (json instanceof Map) {
+      hashMap((Map<?, ?>) json);
+    } else {
+      hashString(json.toString());
+    }
+  }
+
+  private void hashMap(Map<?, ?> map) {
+    long saved1 = _h1;
+    long saved2 = _h2;
+    long sum1 = 0;
+    long sum2 = 0;
+    for (Map.Entry<?, ?> entry : map.entrySet()) {
+      Object key = entry.getKey();
+      if (!(key instanceof String)) {
+        throw new IllegalArgumentException("All keys in a map must be of type string, but found : " + map);
+      }
+      _h1 = SEED1;
+      _h2 = SEED2;
+      update(TAG_ENTRY);
+      hashString((String) key);
+      hashValue(entry.getValue());
+      sum1 += finish1();
+      sum2 += finish2();
+    }
+    _h1 = saved1;
+    _h2 = saved2;
+    update(TAG_MAP);
+    update(map.size());
+    update(sum1);
+    update(sum2);
+  }
+
+  private void hashString(String value) {
+    int length = value.length();
+    update(TAG_STRING);
+    update(length);
+    int i = 0;
+    for (; i + 4 <= length; i += 4) {
+      update(((long) value.charAt(i)) |
+        ((long) value.charAt(i + 1) << 16) |
+        ((long) value.charAt(i + 2) << 32) |
+        ((long) value.charAt(i + 3) << 48));
+    }
+    if (i < length) {
+      long tail = 0;
+      for (int shift = 0; i < length; i++, shift += 16) {
+        tail |= ((long) value.charAt(i)) << shift;
+      }
+      update(tail);
+    }
+  }
+
+  private void hashNumber(Number number) {
+    // the canonical form of any long is a plain integer, so these skip the BigDecimal round trip
+    if (number instanceof Long || number instanceof Integer) {
+      update(TAG_INT);
+      update(number.longValue());
+      return;
+    }
+    BigDecimal decimal = JSchemaUtils.toCanonicalDecimal(number);
+    if (decimal == null) {
+      update(TAG_DOUBLE);
+      update(Double.doubleToLongBits(number.doubleValue()));
+      return;
+    }
+    BigInteger unscaled = decimal.unscaledValue();
+    int scale = decimal.scale();
+    if (scale <= 0 && scale > -19) {
+      BigInteger integral = decimal.toBigIntegerExact();
+      if (integral.compareTo(MIN_LONG) >= 0 && integral.compareTo(MAX_LONG) <= 0) {
+        update(TAG_INT);
+        update(integral.longValue());
+        return;
+      }
+    }
+    update(TAG_DECIMAL);
+    update(scale);
+    byte[] bytes = unscaled.toByteArray();
+    update(bytes.length);
+    for (byte b : bytes) {
+      update(b);
+    }
+  }
+
+  private void update(long k) {
+    long k1 = k * C1;
+    k1 = Long.rotateLeft(k1, 31);
+    k1 *= C2;
+    _h1 ^= k1;
+    _h1 = Long.rotateLeft(_h1, 27);
+    _h1 += _h2;
+    _h1 = _h1 * 5 + 0x52dce729;
+
+    long k2 = k * C2;
+    k2 = Long.rotateLeft(k2, 33);
+    k2 *= C1;
+    _h2 ^= k2;
+    _h2 = Long.rotateLeft(_h2, 31);
+    _h2 += _h1;
+    _h2 = _h2 * 5 + 0x38495ab5;
+  }
+
+  private long finish1() {
+    return fmix(_h1 + _h2);
+  }
+
+  private long finish2() {
+    return fmix(_h2 + _h1 + _h1);
+  }
+
+  private static long fmix(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+}
@@ -0,0 +1,689 @@
+package org.jschema.util;
+
+import gw.lang.reflect.IEnumValue;
+import gw.lang.reflect.IType;
+import org.jschema.model.JsonMap;
+import org.jschema.model.JsonSlotLayout;
+import org.jschema.typeloader.IJSchemaType;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.jschema.util.JsonBinaryWriter.componentType;
+import static org.jschema.util.JsonBinaryWriter.schemaType;
+
+/**
+ * A compiled JSONPath query over JsonMaps and JsonLists (or any maps and lists).  Supported syntax:
+ *
+ * <pre>
+ *   $.name  $['name']  $[0]  $[-1]  $[*]  $.*  $..name  $..*
+ *   $.items[?(@.total_cost > 5 &amp;&amp; @.name != 'x')]
+ * </pre>
+ *
+ * Filters compare a relative path (@.a.b or @[0]) to another path or to a number, string, true, false
+ * or null literal with ==, !=, &lt;, &lt;=, &gt; or &gt;=, combine with &amp;&amp;, || and !, or test
+ * that a path exists (@.name).
+ *
+ * Compiled paths are cached, up to a bound past which arbitrary entries are dropped.  A path compiled against a JSchema type is checked against it, and
+ * its slot names are resolved to slot ordinals so that typed maps are read by index.  Results are
+ * produced by walking the tree directly, without collecting intermediate node sets.
+ */
+public class JsonPath {
+
+  private static final int MAX_CACHED_PATHS = 1024;
+  private static final ConcurrentHashMap<Object, JsonPath> CACHE = new ConcurrentHashMap<Object, JsonPath>();
+  private static final Object MISSING = new Object();
+
+  private final String _path;
+  private final Step[] _steps;
+
+  private JsonPath(String path, Step[] steps) {
+    _path = path;
+    _steps = steps;
+  }
+
+  public static JsonPath compile(String path) {
+    return compile(path, null);
+  }
+
+  /**
+   * Compiles a path to be evaluated against JSON of the given root type.
+   *
+   * @throws IllegalArgumentException if the path is malformed or names a slot the type does not have
+   */
+  public static JsonPath compile(String path, IType rootType) {
+    Object key = rootType == null ? path : Arrays.asList(path, rootType);
+    JsonPath compiled = CACHE.get(key);
+    if (compiled == null) {
+      compiled = new Parser(path).parse(rootType);
+      JsonPath existing = CACHE.putIfAbsent(key, compiled);
+      if (existing != null) {
+        return existing;
+      }
+      if (CACHE.size() > MAX_CACHED_PATHS) {
+        evict();
+      }
+    }
+    return compiled;
+  }
+
+  /**
+   * Drops entries until the cache is back under its bound.  Which ones go is left to the map's
+   * iteration order, which is cheaper than tracking use and good enough for a cache of this kind.
+   */
+  private static void evict() {
+    Iterator<Object> keys = CACHE.keySet().iterator();
+    while (CACHE.size() > MAX_CACHED_PATHS && keys.hasNext()) {
+      keys.next();
+      keys.remove();
+    }
+  }
+
+  /**
+   * Drops all cached paths, e.g. when types are refreshed.
+   */
+  public static void clearCache() {
+    CACHE.clear();
+  }
+
+  public List<Object> select(Object json) {
+    final List<Object> results = new ArrayList<Object>();
+    eval(json, 0, new Visitor() {
+      @Override
+      public boolean visit(Object node) {
+        results.add(node);
+        return true;
+      }
+    });
+    return results;
+  }
+
+  /**
+   * @return the first match, or null if there is none
+   */
+  public Object selectFirst(Object json) {
+    final Object[] result = new Object[1];
+    eval(json, 0, new Visitor() {
+      @Override
+      public boolean visit(Object node) {
+        result[0] = node;
+        return false;
+      }
+    });
+    return result[0];
+  }
+
+  /**
+   * Calls the visitor with each match in turn, until it returns false.
+   */
+  public void forEach(Object json, Visitor visitor) {
+    eval(json, 0, visitor);
+  }
+
+  @Override
+  public String toString() {
+    return _path;
+  }
+
+  public interface Visitor {
+    /**
+     * @return false to stop the evaluation
+     */
+    boolean visit(Object node);
+  }
+
+  private boolean eval(Object node, int step, Visitor visitor) {
+    if (step == _steps.length) {
+      return visitor.visit(node);
+    }
+    return _steps[step].apply(this, node, step + 1, visitor);
+  }
+
+  private static Collection<?> children(Object node) {
+    if (node instanceof Map) {
+      return ((Map<?, ?>) node).values();
+    } else if (node instanceof List) {
+      return (List<?>) node;
+    }
+    return Collections.emptyList();
+  }
+
+  private static abstract class Step {
+    abstract boolean apply(JsonPath path, Object node, int next, Visitor visitor);
+
+    /**
+     * @return the single value this step selects from the node, or MISSING
+     */
+    Object select(Object node) {
+      throw new IllegalStateException();
+    }
+  }
+
+  private static class FieldStep extends Step {
+    private final String _name;
+    private final JsonSlotLayout _layout;
+    private final int _ordinal;
+
+    private FieldStep(String name, JsonSlotLayout layout, int ordinal) {
+      _name = name;
+      _layout = layout;
+      _ordinal = ordinal;
+    }
+
+    @Override
+    Object select(Object node) {
+      if (node instanceof JsonMap && _layout != null && ((JsonMap) node).getSlotLayout() == _layout) {
+        Object value = ((JsonMap) node).getSlot(_ordinal);
+        if (value != null || ((JsonMap) node).containsKey(_name)) {
+          return value;
+        }
+      } else if (node instanceof Map) {
+        Map<?, ?> map = (Map<?, ?>) node;
+        Object value = map.get(_name);
+        if (value != null || map.containsKey(_name)) {
+          return value;
+        }
+      }
+      return MISSING;
+    }
+
+    @Override
+    boolean apply(JsonPath path, Object node, int next, Visitor visitor) {
+      Object value = select(node);
+      return value == MISSING || path.eval(value, next, visitor);
+    }
+  }
+
+  private static class IndexStep extends Step {
+    private final int _index;
+
+    private IndexStep(int index) {
+      _index = index;
+    }
+
+    @Override
+    Object select(Object node) {
+      if (node instanceof List) {
+        List<?> list = (List<?>) node;
+        int index = _index < 0 ? list.size() + _index : _index;
+        if (index >= 0 && index < list.size()) {
+          return list.get(index);
+        }
+      }
+      return MISSING;
+    }
+
+    @Override
+    boolean apply(JsonPath path, Object node, int next, Visitor visitor) {
+      Object value = select(node);
+      return value == MISSING || path.eval(value, next, visitor);
+    }
+  }
+
+  private static class WildcardStep extends Step {
+    @Override
+    boolean apply(JsonPath path, Object node, int next, Visitor visitor) {
+      for (Object child : children(node)) {
+        if (!path.eval(child, next, visitor)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Applies the selector to the node and to every node below it.
+   */
+  private static class DescendantStep extends Step {
+    private final Step _selector;
+
+    private DescendantStep(Step selector) {
+      _selector = selector;
+    }
+
+    @Override
+    boolean apply(JsonPath path, Object node, int next, Visitor visitor) {
+      if (!_selector.apply(path, node, next, visitor)) {
+        return false;
+      }
+      for (Object child : children(node)) {
+        if ((child instanceof Map || child instanceof List) && !apply(path, child, next, visitor)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private static class FilterStep extends Step {
+    private final Expr _filter;
+
+    private FilterStep(Expr filter) {
+      _filter = filter;
+    }
+
+    @Override
+    boolean apply(JsonPath path, Object node, int next, Visitor visitor) {
+      for (Object child : children(node)) {
+        if (isTrue(_filter.value(child)) && !path.eval(child, next, visitor)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private static boolean isTrue(Object value) {
+    return value == Boolean.TRUE;
+  }
+
+  private interface Expr {
+    Object value(Object current);
+  }
+
+  private static class LiteralExpr implements Expr {
+    private final Object _value;
+
+    private LiteralExpr(Object value) {
+      _value = value;
+    }
+
+    @Override
+    public Object value(Object current) {
+      return _value;
+    }
+  }
+
+  private static class PathExpr implements Expr {
+    private final Step[] _steps;
+
+    private PathExpr(Step[] steps) {
+      _steps = steps;
+    }
+
+    @Override
+    public Object value(Object current) {
+      Object value = current;
+      for (int i = 0; i < _steps.length && value != MISSING; i++) {
+        value = _steps[i].select(value);
+      }
+      return value;
+    }
+  }
+
+  /**
+   * A path on its own in a filter tests that it exists.
+   */
+  private static class ExistsExpr implements Expr {
+    private final PathExpr _path;
+
+    private ExistsExpr(PathExpr path) {
+      _path = path;
+    }
+
+    @Override
+    public Object value(Object current) {
+      return _path.value(current) != MISSING;
+    }
+  }
+
+  private static class NotExpr implements Expr {
+    private final Expr _operand;
+
+    private NotExpr(Expr operand) {
+      _operand = operand;
+    }
+
+    @Override
+    public Object value(Object current) {
+      return !isTrue(_operand.value(current));
+    }
+  }
+
+  private static class LogicalExpr implements Expr {
+    private final Expr _left;
+    private final Expr _right;
+    private final boolean _and;
+
+    private LogicalExpr(Expr left, Expr right, boolean and) {
+      _left = left;
+      _right = right;
+      _and = and;
+    }
+
+    @Override
+    public Object value(Object current) {
+      boolean left = isTrue(_left.value(current));
+      if (_and ? !left : left) {
+        return left;
+      }
+      return isTrue(_right.value(current));
+    }
+  }
+
+  private static class CompareExpr implements Expr {
+    private final Expr _left;
+    private final Expr _right;
+    private final String _op;
+
+    private CompareExpr(Expr left, String op, Expr right) {
+      _left = left;
+      _op = op;
+      _right = right;
+    }
+
+    @Override
+    public Object value(Object current) {
+      Object left = _left.value(current);
+      Object right = _right.value(current);
+      if (left == MISSING || right == MISSING) {
+        return false;
+      }
+      left = normalize(left);
+      right = normalize(right);
+      if ("==".equals(_op)) {
+        return isEqual(left, right);
+      } else if ("!=".equals(_op)) {
+        return !isEqual(left, right);
+      }
+      Integer comparison = compare(left, right);
+      if (comparison == null) {
+        return false;
+      } else if ("<".equals(_op)) {
+        return comparison < 0;
+      } else if ("<=".equals(_op)) {
+        return comparison <= 0;
+      } else if (">".equals(_op)) {
+        return comparison > 0;
+      } else {
+        return comparison >= 0;
+      }
+    }
+
+    private static boolean isEqual(Object left, Object right) {
+      if (left == null || right == null) {
+        return left == right;
+      }
+      if (left.equals(right)) {
+        return true;
+      }
+      Integer comparison = compare(left, right);
+      return comparison != null && comparison == 0;
+    }
+
+    private static Object normalize(Object value) {
+      if (value instanceof Number) {
+        return JSchemaUtils.toCanonicalDecimal((Number) value);
+      } else if (value instanceof IEnumValue) {
+        return ((IEnumValue) value).getValue();
+      } else if (value instanceof URI) {
+        return value.toString();
+      }
+      return value;
+    }
+
+    private static Integer compare(Object left, Object right) {
+      if (left instanceof BigDecimal && right instanceof BigDecimal) {
+        return ((BigDecimal) left).compareTo((BigDecimal) right);
+      } else if (left instanceof String && right instanceof String) {
+        return ((String) left).compareTo((String) right);
+      } else if (left instanceof Date && right instanceof Date) {
+        return ((Date) left).compareTo((Date) right);
+      }
+      return null;
+    }
+  }
+
+  private static class Parser {
+    private final String _path;
+    private int _pos;
+
+    private Parser(String path) {
+      _path = path;
+    }
+
+    private JsonPath parse(IType rootType) {
+      skipWhitespace();
+      expect('$');
+      List<Step> steps = new ArrayList<Step>();
+      IType[] type = {rootType};
+      while (true) {
+        skipWhitespace();
+        if (atEnd()) {
+          break;
+        }
+        steps.add(parseSegment(type, false));
+      }
+      return new JsonPath(_path, steps.toArray(new Step[steps.size()]));
+    }
+
+    /**
+     * @param type the type of the current node, updated to the type selected by the segment
+     * @param singular whether only single-valued segments (names and indexes) are allowed
+     */
+    private Step parseSegment(IType[] type, boolean singular) {
+      if (peek("..") && !singular) {
+        _pos += 2;
+        Step selector = peek("*") ? wildcard() : fieldStep(parseName(), null);
+        type[0] = null;
+        return new DescendantStep(selector);
+      } else if (peek(".")) {
+        _pos++;
+        if (peek("*") && !singular) {
+          type[0] = componentType(type[0]);
+          return wildcard();
+        }
+        return typedFieldStep(parseName(), type);
+      } else if (peek("[")) {
+        _pos++;
+        skipWhitespace();
+        Step step;
+        if (peek("'") || peek("\"")) {
+          step = typedFieldStep(parseQuoted(), type);
+        } else if (peek("*") && !singular) {
+          step = wildcard();
+          type[0] = componentType(type[0]);
+        } else if (peek("?(") && !singular) {
+          _pos += 2;
+          IType[] elementType = {componentType(type[0])};
+          step = new FilterStep(parseOr(elementType[0]));
+          skipWhitespace();
+          expect(')');
+          type[0] = elementType[0];
+        } else {
+          step = new IndexStep(parseInt());
+          type[0] = componentType(type[0]);
+        }
+        skipWhitespace();
+        expect(']');
+        return step;
+      }
+      throw error("Expected '.' or '['");
+    }
+
+    private Step wildcard() {
+      _pos++;
+      return new WildcardStep();
+    }
+
+    private Step typedFieldStep(String name, IType[] type) {
+      IJSchemaType schemaType = schemaType(type[0]);
+      JsonSlotLayout layout = schemaType == null ? null : schemaType.getSlotLayout();
+      if (layout != null) {
+        int ordinal = layout.getOrdinal(name);
+        if (ordinal < 0) {
+          throw new IllegalArgumentException("'" + name + "' is not a slot of " + type[0].getName() + " in JSON path " + _path);
+        }
+        type[0] = schemaType.getTypeForJsonSlot(name);
+        return new FieldStep(name, layout, ordinal);
+      }
+      type[0] = componentType(type[0]);
+      return fieldStep(name, null);
+    }
+
+    private static Step fieldStep(String name, JsonSlotLayout layout) {
+      return new FieldStep(name, layout, -1);
+    }
+
+    private Expr parseOr(IType elementType) {
+      Expr expr = parseAnd(elementType);
+      while (skipWhitespace() && peek("||")) {
+        _pos += 2;
+        expr = new LogicalExpr(expr, parseAnd(elementType), false);
+      }
+      return expr;
+    }
+
+    private Expr parseAnd(IType elementType) {
+      Expr expr = parseUnary(elementType);
+      while (skipWhitespace() && peek("&&")) {
+        _pos += 2;
+        expr = new LogicalExpr(expr, parseUnary(elementType), true);
+      }
+      return expr;
+    }
+
+    private Expr parseUnary(IType elementType) {
+      skipWhitespace();
+      if (peek("!") && !peek("!=")) {
+        _pos++;
+        return new NotExpr(parseUnary(elementType));
+      } else if (peek("(")) {
+        _pos++;
+        Expr expr = parseOr(elementType);
+        skipWhitespace();
+        expect(')');
+        return expr;
+      }
+      Expr left = parseOperand(elementType);
+      skipWhitespace();
+      for (String op : new String[]{"==", "!=", "<=", ">=", "<", ">"}) {
+        if (peek(op)) {
+          _pos += op.length();
+          return new CompareExpr(left, op, parseOperand(elementType));
+        }
+      }
+      if (left instanceof PathExpr) {
+        return new ExistsExpr((PathExpr) left);
+      }
+      throw error("Expected a comparison");
+    }
+
+    private Expr parseOperand(IType elementType) {
+      skipWhitespace();
+      if (peek("@")) {
+        _pos++;
+        List<Step> steps = new ArrayList<Step>();
+        IType[] type = {elementType};
+        while (peek(".") || peek("[")) {
+          steps.add(parseSegment(type, true));
+        }
+        return new PathExpr(steps.toArray(new Step[steps.size()]));
+      } else if (peek("'") || peek("\"")) {
+        return new LiteralExpr(parseQuoted());
+      } else if (peekWord("true")) {
+        return new LiteralExpr(Boolean.TRUE);
+      } else if (peekWord("false")) {
+        return new LiteralExpr(Boolean.FALSE);
+      } else if (peekWord("null")) {
+        return new LiteralExpr(null);
+      }
+      int start = _pos;
+      while (!atEnd() && "+-.eE0123456789".indexOf(_path.charAt(_pos)) >= 0) {
+        _pos++;
+      }
+      if (start == _pos) {
+        throw error("Expected a path or a literal");
+      }
+      try {
+        return new LiteralExpr(new BigDecimal(_path.substring(start, _pos)));
+      } catch (NumberFormatException e) {
+        throw error("Bad number " + _path.substring(start, _pos));
+      }
+    }
+
+    private String parseName() {
+      int start = _pos;
+      while (!atEnd()) {
+        char c = _path.charAt(_pos);
+        if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '$') {
+          break;
+        }
+        _pos++;
+      }
+      if (start == _pos) {
+        throw error("Expected a name");
+      }
+      return _path.substring(start, _pos);
+    }
+
+    private String parseQuoted() {
+      char quote = _path.charAt(_pos++);
+      StringBuilder value = new StringBuilder();
+      while (!atEnd() && _path.charAt(_pos) != quote) {
+        char c = _path.charAt(_pos++);
+        if (c == '\\' && !atEnd()) {
+          c = _path.charAt(_pos++);
+        }
+        value.append(c);
+      }
+      expect(quote);
+      return value.toString();
+    }
+
+    private int parseInt() {
+      int start = _pos;
+      if (peek("-")) {
+        _pos++;
+      }
+      while (!atEnd() && Character.isDigit(_path.charAt(_pos))) {
+        _pos++;
+      }
+      try {
+        return Integer.parseInt(_path.substring(start, _pos));
+      } catch (NumberFormatException e) {
+        throw error("Expected an index");
+      }
+    }
+
+    private boolean peek(String s) {
+      return _path.startsWith(s, _pos);
+    }
+
+    private boolean peekWord(String word) {
+      if (peek(word)) {
+        int end = _pos + word.length();
+        if (end == _path.length() || !Character.isLetterOrDigit(_path.charAt(end))) {
+          _pos = end;
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private boolean atEnd() {
+      return _pos >= _path.length();
+    }
+
+    private boolean skipWhitespace() {
+      while (!atEnd() && Character.isWhitespace(_path.charAt(_pos))) {
+        _pos++;
+      }
+      return true;
+    }
+
+    private void expect(char c) {
+      if (atEnd() || _path.charAt(_pos) != c) {
+        throw error("Expected '" + c + "'");
+      }
+      _pos++;
+    }
+
+    private IllegalArgumentException error(String message) {
+      return new IllegalArgumentException(message + " at offset " + _pos + " in JSON path " + _path);
+    }
+  }
+}
@@ -0,0 +1,153 @@
+package org.jschema.model;
+
+import org.jschema.util.JSchemaUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class JsonDescendentSpliteratorTest {
+
+  private static final String DOCUMENT =
+    "{\"name\" : \"store\", \"orders\" : [{\"id\" : 1, \"lines\" : [1, 2, 3, 4, 5]}, {\"id\" : 2, \"lines\" : []}, " +
+    "{\"id\" : 3, \"lines\" : [6, [7, 8], {\"x\" : 9}]}], \"owner\" : {\"name\" : \"ann\", \"tags\" : [\"a\", \"b\"]}, " +
+    "\"empty\" : {}}";
+
+  @Test
+  public void walksInPreOrder() {
+    JsonMap root = parse(DOCUMENT);
+    assertEquals(preOrder(root), collect(new JsonDescendentSpliterator(root)));
+  }
+
+  @Test
+  public void splitsIntoOrderedChunks() {
+    Random random = new Random(38);
+    for (String json : Arrays.asList(DOCUMENT, "{\"a\" : {\"b\" : [[1, [2, 3]]], \"c\" : {}}}")) {
+      JsonMap root = parse(json);
+      List<Object> expected = preOrder(root);
+      for (int round = 0; round < 500; round++) {
+        List<Object> actual = new ArrayList<Object>();
+        splitRandomly(new JsonDescendentSpliterator(root), random, actual);
+        assertEquals(expected, actual);
+      }
+    }
+  }
+
+  @Test
+  public void parallelStreamKeepsOrder() {
+    JsonList orders = new JsonList();
+    for (int i = 0; i < 2000; i++) {
+      JsonMap order = new JsonMap();
+      order.put("id", (long) i);
+      JsonList lines = new JsonList();
+      for (int j = 0; j < i % 7; j++) {
+        lines.add((long) j);
+      }
+      order.put("lines", lines);
+      orders.add(order);
+    }
+    JsonMap root = new JsonMap();
+    root.put("orders", orders);
+    assertEquals(preOrder(root), root.streamDescendents().parallel().collect(Collectors.toList()));
+  }
+
+  @Test
+  public void leafChunksAreSized() {
+    JsonList list = new JsonList();
+    for (long i = 0; i < 100; i++) {
+      list.add(i);
+    }
+    Spliterator<Object> suffix = new JsonDescendentSpliterator(list);
+    Spliterator<Object> head = suffix.trySplit();
+    assertEquals(51, head.estimateSize());
+    assertTrue(suffix.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED));
+    assertEquals(50, suffix.estimateSize());
+    Spliterator<Object> prefix = suffix.trySplit();
+    assertTrue(prefix.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED));
+    assertEquals(25, prefix.estimateSize());
+    assertEquals(25, suffix.estimateSize());
+    assertEquals(25, collect(prefix).size());
+    assertEquals(0, prefix.estimateSize());
+    assertEquals(51, collect(head).size());
+  }
+
+  @Test
+  public void aLeafDoesNotSplit() {
+    Spliterator<Object> spliterator = new JsonDescendentSpliterator("leaf");
+    assertNull(spliterator.trySplit());
+    assertEquals(1, spliterator.estimateSize());
+    List<Object> visited = collect(spliterator);
+    assertEquals(1, visited.size());
+    assertSame("leaf", visited.get(0));
+  }
+
+  private static void splitRandomly(Spliterator<Object> spliterator, Random random, List<Object> results) {
+    while (true) {
+      int choice = random.nextInt(3);
+      if (choice == 0) {
+        Spliterator<Object> prefix = spliterator.trySplit();
+        if (prefix != null) {
+          splitRandomly(prefix, random, results);
+        }
+      } else if (choice == 1 && !spliterator.tryAdvance(new Adder(results))) {
+        return;
+      } else if (choice == 2 && random.nextInt(4) == 0) {
+        results.addAll(collect(spliterator));
+        return;
+      }
+    }
+  }
+
+  private static List<Object> collect(Spliterator<Object> spliterator) {
+    List<Object> results = new ArrayList<Object>();
+    spliterator.forEachRemaining(new Adder(results));
+    return results;
+  }
+
+  private static List<Object> preOrder(Object root) {
+    List<Object> results = new ArrayList<Object>();
+    addPreOrder(root, results);
+    return results;
+  }
+
+  private static void addPreOrder(Object node, List<Object> results) {
+    results.add(node);
+    if (node instanceof Map) {
+      for (Object child : ((Map<?, ?>) node).values()) {
+        addPreOrder(child, results);
+      }
+    } else if (node instanceof List) {
+      for (Object child : (List<?>) node) {
+        addPreOrder(child, results);
+      }
+    }
+  }
+
+  private static JsonMap parse(String json) {
+    return (JsonMap) JSchemaUtils.parseJson(json);
+  }
+
+  private static class Adder implements Consumer<Object> {
+    private final List<Object> _results;
+
+    private Adder(List<Object> results) {
+      _results = results;
+    }
+
+    @Override
+    public void accept(Object node) {
+      _results.add(node);
+    }
+  }
+}
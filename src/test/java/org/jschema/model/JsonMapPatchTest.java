@@ -0,0 +1,84 @@
+package org.jschema.model;
+
+import org.jschema.util.JSchemaUtils;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class JsonMapPatchTest {
+
+  private static final String DOCUMENT =
+    "{\"name\" : \"Acme\", \"address\" : {\"x\" : 1, \"y\" : 2, \"geo\" : {\"lat\" : 1, \"lng\" : 2}}, " +
+    "\"tags\" : [\"a\", \"b\"], \"count\" : 3}";
+
+  @Test
+  public void editedChildRoundTrips() {
+    JsonMap edited = parse(DOCUMENT);
+    edited.checkpoint();
+    ((JsonMap) edited.get("address")).put("x", 3L);
+    ((JsonMap) edited.get("address")).remove("y");
+    edited.put("count", 4L);
+    assertRoundTrips(edited);
+  }
+
+  @Test
+  public void replacedChildRoundTrips() {
+    JsonMap edited = parse(DOCUMENT);
+    edited.checkpoint();
+    edited.put("address", parse("{\"x\" : 3, \"geo\" : {\"lat\" : 5}}"));
+    assertRoundTrips(edited);
+  }
+
+  @Test
+  public void childReplacedAfterEditingRoundTrips() {
+    JsonMap edited = parse(DOCUMENT);
+    edited.checkpoint();
+    JsonMap address = (JsonMap) edited.get("address");
+    address.remove("x");
+    edited.remove("address");
+    edited.put("address", parse("{\"z\" : 3}"));
+    assertRoundTrips(edited);
+  }
+
+  @Test
+  public void childPutBackRoundTrips() {
+    JsonMap edited = parse(DOCUMENT);
+    edited.checkpoint();
+    JsonMap address = (JsonMap) edited.remove("address");
+    address.remove("y");
+    edited.put("address", address);
+    assertRoundTrips(edited);
+  }
+
+  @Test
+  public void removalsThroughViewsRoundTrip() {
+    JsonMap edited = parse(DOCUMENT);
+    edited.checkpoint();
+    edited.keySet().remove("name");
+    edited.values().remove(3L);
+    Iterator<Map.Entry> entries = edited.entrySet().iterator();
+    entries.next();
+    entries.remove();
+    assertRoundTrips(edited);
+  }
+
+  /**
+   * Compares canonical output, since a patch does not carry the position of a key put back.
+   */
+  private static void assertRoundTrips(JsonMap edited) {
+    JsonMap mergePatched = parse(DOCUMENT);
+    mergePatched.applyPatch(edited.writeDelta());
+    assertEquals(edited.writeCanonical(), mergePatched.writeCanonical());
+
+    JsonMap jsonPatched = parse(DOCUMENT);
+    jsonPatched.applyPatch(edited.writeJsonPatch());
+    assertEquals(edited.writeCanonical(), jsonPatched.writeCanonical());
+  }
+
+  private static JsonMap parse(String json) {
+    return (JsonMap) JSchemaUtils.parseJson(json);
+  }
+}
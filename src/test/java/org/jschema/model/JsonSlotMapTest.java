@@ -0,0 +1,129 @@
+package org.jschema.model;
+
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class JsonSlotMapTest {
+
+  private static final JsonSlotLayout LAYOUT = new JsonSlotLayout(Arrays.asList("id", "name", "active", "address"));
+  private static final JsonSlotLayout TYPED_LAYOUT = new JsonSlotLayout(Arrays.asList("count", "flag", "when"),
+    new int[] {JsonSlotLayout.LONG_SLOT, JsonSlotLayout.BOOLEAN_SLOT, JsonSlotLayout.DATE_SLOT});
+
+  @Test
+  public void keepsSchemaOrderWhenPutInIt() {
+    JsonSlotMap<Object> map = new JsonSlotMap<Object>(LAYOUT);
+    map.put("id", 1L);
+    map.put("active", true);
+    map.put("extra", "x");
+    assertEquals(Arrays.asList("id", "active", "extra"), new ArrayList<String>(map.keySet()));
+  }
+
+  @Test
+  public void keepsInsertionOrderWhenPutOutOfSchemaOrder() {
+    JsonSlotMap<Object> map = new JsonSlotMap<Object>(LAYOUT);
+    map.put("name", "n");
+    map.put("extra", "x");
+    map.put("id", 1L);
+    map.put("other", "y");
+    map.put("active", false);
+    assertEquals(Arrays.asList("name", "extra", "id", "other", "active"), new ArrayList<String>(map.keySet()));
+    map.put("name", "m");
+    map.remove("extra");
+    assertEquals(Arrays.asList("name", "id", "other", "active"), new ArrayList<String>(map.keySet()));
+    List<String> visited = new ArrayList<String>();
+    for (Map.Entry<String, Object> entry : map.entrySet()) {
+      visited.add(entry.getKey());
+    }
+    assertEquals(new ArrayList<String>(map.keySet()), visited);
+  }
+
+  @Test
+  public void iteratorRemovalKeepsOrder() {
+    JsonSlotMap<Object> map = new JsonSlotMap<Object>(LAYOUT);
+    map.put("address", "a");
+    map.put("extra", "x");
+    map.put("id", 1L);
+    Iterator<String> keys = map.keySet().iterator();
+    keys.next();
+    keys.next();
+    keys.remove();
+    keys.next();
+    keys.remove();
+    map.put("name", "n");
+    assertEquals(Arrays.asList("address", "name"), new ArrayList<String>(map.keySet()));
+  }
+
+  @Test
+  public void ordersLikeALinkedHashMap() {
+    Random random = new Random(31);
+    for (int round = 0; round < 200; round++) {
+      JsonSlotMap<Object> map = new JsonSlotMap<Object>(LAYOUT);
+      Map<String, Object> expected = new LinkedHashMap<String, Object>();
+      for (int i = 0; i < 40; i++) {
+        String key = random.nextInt(3) == 0 ? "extra" + random.nextInt(3) : LAYOUT.getSlot(random.nextInt(LAYOUT.size()));
+        if (random.nextInt(3) == 0) {
+          map.remove(key);
+          expected.remove(key);
+        } else {
+          map.put(key, (long) i);
+          expected.put(key, (long) i);
+        }
+        assertEquals(new ArrayList<Map.Entry<String, Object>>(expected.entrySet()),
+                     new ArrayList<Map.Entry<String, Object>>(map.entrySet()));
+      }
+    }
+  }
+
+  @Test
+  public void storesDatesAsEpochMillis() {
+    JsonSlotMap<Object> map = new JsonSlotMap<Object>(TYPED_LAYOUT);
+    Date date = new Date(1234567890123L);
+    map.put("when", date);
+    date.setTime(0);
+    assertEquals(1234567890123L, map.getPrimitiveSlot(2, -1));
+    Object read = map.get("when");
+    assertEquals(new Date(1234567890123L), read);
+    assertSame(JsonFrozenDate.class, read.getClass());
+    try {
+      ((Date) read).setTime(0);
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    map.putPrimitiveSlot(2, 42L);
+    assertEquals(new Date(42L), map.get("when"));
+    map.put("when", read);
+    assertEquals(1234567890123L, map.getPrimitiveSlot(2, -1));
+  }
+
+  @Test
+  public void keepsOtherValuesOfPrimitiveSlots() {
+    JsonSlotMap<Object> map = new JsonSlotMap<Object>(TYPED_LAYOUT);
+    Timestamp timestamp = new Timestamp(5L);
+    map.put("when", timestamp);
+    map.put("count", "many");
+    map.put("flag", null);
+    assertSame(timestamp, map.get("when"));
+    assertEquals("many", map.get("count"));
+    assertEquals(-1, map.getPrimitiveSlot(0, -1));
+    assertEquals(-1, map.getPrimitiveSlot(1, -1));
+    map.put("count", 300L);
+    map.put("flag", true);
+    assertEquals(300L, map.getPrimitiveSlot(0, -1));
+    assertEquals(300L, map.get("count"));
+    assertEquals(true, map.get("flag"));
+  }
+}
@@ -0,0 +1,85 @@
+package org.jschema.util;
+
+import org.jschema.model.JsonMap;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class JsonBinaryTest {
+
+  private static final String DOCUMENT =
+    "{\"name\" : \"Acme\", \"count\" : -42, " +
+    "\"price\" : 12.50, \"ratio\" : 0.25, \"active\" : true, \"closed\" : false, \"note\" : null, " +
+    "\"address\" : {\"name\" : \"HQ\", \"lines\" : [\"1 Main St\", \"\", \"Palo Alto\"]}, " +
+    "\"orders\" : [{\"name\" : \"first\", \"count\" : 1}, {\"name\" : \"second\", \"count\" : 2}], \"empty\" : {}}";
+
+  @Test
+  public void roundTrips() {
+    JsonMap json = (JsonMap) JSchemaUtils.parseJson(DOCUMENT);
+    Object read = JSchemaUtils.parseBinary(json.writeBinary());
+    assertEquals(json, read);
+    assertEquals(json.write(), ((JsonMap) read).write());
+  }
+
+  @Test
+  public void roundTripsNumbers() {
+    for (Object number : Arrays.asList(0L, 1L, -1L, Long.MAX_VALUE, Long.MIN_VALUE, new BigDecimal("-0.001"),
+                                       new BigInteger("-98765432109876543210"), 1.5e300, -0.0)) {
+      assertEquals(number, JSchemaUtils.parseBinary(JSchemaUtils.serializeBinary(number)));
+    }
+  }
+
+  @Test
+  public void repeatedKeysAreWrittenOnce() {
+    JsonMap json = (JsonMap) JSchemaUtils.parseJson(DOCUMENT);
+    byte[] bytes = json.writeBinary();
+    String text = new String(bytes, java.nio.charset.StandardCharsets.ISO_8859_1);
+    assertEquals(text.indexOf("count"), text.lastIndexOf("count"));
+  }
+
+  @Test
+  public void rejectsOtherVersions() {
+    byte[] bytes = JSchemaUtils.serializeBinary(JSchemaUtils.parseJson(DOCUMENT));
+    bytes[0] = (byte) (JsonBinaryWriter.VERSION + 1);
+    try {
+      JSchemaUtils.parseBinary(bytes);
+      fail("Read a stream of another version");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Unsupported binary JSON version : " + (JsonBinaryWriter.VERSION + 1), e.getMessage());
+    }
+  }
+
+  @Test
+  public void rejectsTruncatedInput() {
+    byte[] bytes = JSchemaUtils.serializeBinary(JSchemaUtils.parseJson(DOCUMENT));
+    for (int length = 0; length < bytes.length; length++) {
+      try {
+        JSchemaUtils.parseBinary(Arrays.copyOf(bytes, length));
+        fail("Read a stream truncated to " + length + " bytes");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsUnknownTags() {
+    JSchemaUtils.parseBinary(new byte[]{(byte) JsonBinaryWriter.VERSION, 99});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsBadKeyReferences() {
+    // a map of one entry whose key refers to the fifth key seen, before any was
+    JSchemaUtils.parseBinary(new byte[]{(byte) JsonBinaryWriter.VERSION, JsonBinaryWriter.TAG_MAP, 1, 10, JsonBinaryWriter.TAG_NULL});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsEnumsWithoutAnEnumType() {
+    JSchemaUtils.parseBinary(new byte[]{(byte) JsonBinaryWriter.VERSION, JsonBinaryWriter.TAG_ENUM, 0});
+  }
+}
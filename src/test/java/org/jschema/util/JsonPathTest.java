@@ -0,0 +1,117 @@
+package org.jschema.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class JsonPathTest {
+
+  private static final Object DOCUMENT = JSchemaUtils.parseJson(
+    "{\"name\" : \"store\", \"open\" : true, " +
+    "\"items\" : [{\"name\" : \"pen\", \"price\" : 2, \"tags\" : [\"office\"]}, " +
+    "{\"name\" : \"book\", \"price\" : 12.5, \"author\" : null}, " +
+    "{\"name\" : \"lamp\", \"price\" : 30, \"stock\" : {\"count\" : 0}}], " +
+    "\"owner\" : {\"name\" : \"ann\", \"my key\" : 1}}");
+
+  @Test
+  public void selectsFieldsAndIndexes() {
+    assertEquals(Arrays.<Object>asList("store"), select("$.name"));
+    assertEquals(Arrays.<Object>asList("ann"), select("$['owner'][\"name\"]"));
+    assertEquals(Arrays.<Object>asList(1L), select("$.owner['my key']"));
+    assertEquals(Arrays.<Object>asList("pen"), select("$.items[0].name"));
+    assertEquals(Arrays.<Object>asList("lamp"), select("$.items[-1].name"));
+    assertEquals(Collections.emptyList(), select("$.items[3]"));
+    assertEquals(Collections.emptyList(), select("$.missing.name"));
+    assertEquals(Arrays.<Object>asList((Object) null), select("$.items[1].author"));
+  }
+
+  @Test
+  public void wildcardsSelectEveryChild() {
+    assertEquals(Arrays.<Object>asList("pen", "book", "lamp"), select("$.items[*].name"));
+    assertEquals(Arrays.<Object>asList("pen", "book", "lamp"), select("$.items.*.name"));
+    assertEquals(Arrays.<Object>asList("ann", 1L), select("$.owner.*"));
+    assertEquals(select("$.owner.*"), select("$.owner[*]"));
+    assertEquals(Collections.emptyList(), select("$.name.*"));
+  }
+
+  @Test
+  public void descendantsAreVisitedInDocumentOrder() {
+    assertEquals(Arrays.<Object>asList("store", "pen", "book", "lamp", "ann"), select("$..name"));
+    assertEquals(Arrays.<Object>asList(0L), select("$..count"));
+    assertEquals(Arrays.<Object>asList("office"), select("$..tags[0]"));
+    List<Object> all = select("$..*");
+    assertEquals(20, all.size());
+  }
+
+  @Test
+  public void filtersCompareNumbersStringsAndNull() {
+    assertEquals(Arrays.<Object>asList("book", "lamp"), select("$.items[?(@.price > 5)].name"));
+    assertEquals(Arrays.<Object>asList("book"), select("$.items[?(@.price == 12.50)].name"));
+    assertEquals(Arrays.<Object>asList("pen"), select("$.items[?(@.price <= 2.0)].name"));
+    assertEquals(Arrays.<Object>asList("pen", "lamp"), select("$.items[?(@.name != 'book')].name"));
+    assertEquals(Arrays.<Object>asList("book"), select("$.items[?(@.author == null)].name"));
+    assertEquals(Arrays.<Object>asList("pen"), select("$.items[?(@.tags[0] == \"office\")].name"));
+    assertEquals(Arrays.<Object>asList("lamp"), select("$.items[?(@.stock.count >= 0)].name"));
+  }
+
+  @Test
+  public void filtersCombineAndTestExistence() {
+    assertEquals(Arrays.<Object>asList("book"), select("$.items[?(@.price > 5 && @.price < 20)].name"));
+    assertEquals(Arrays.<Object>asList("pen", "lamp"), select("$.items[?(@.price < 5 || @.price > 20)].name"));
+    assertEquals(Arrays.<Object>asList("pen", "lamp"), select("$.items[?(!(@.price > 5 && @.price < 20))].name"));
+    assertEquals(Arrays.<Object>asList("book"), select("$.items[?(@.author)].name"));
+    assertEquals(Arrays.<Object>asList("pen", "lamp"), select("$.items[?(!@.author)].name"));
+    assertEquals(Collections.emptyList(), select("$.items[?(@.missing > 1)].name"));
+  }
+
+  @Test
+  public void stopsWhenTheVisitorSaysSo() {
+    assertEquals("pen", JsonPath.compile("$..name").selectFirst(((Map) DOCUMENT).get("items")));
+    assertNull(JsonPath.compile("$.missing").selectFirst(DOCUMENT));
+    final List<Object> visited = new ArrayList<Object>();
+    JsonPath.compile("$.items[*].name").forEach(DOCUMENT, new JsonPath.Visitor() {
+      @Override
+      public boolean visit(Object node) {
+        visited.add(node);
+        return visited.size() < 2;
+      }
+    });
+    assertEquals(Arrays.<Object>asList("pen", "book"), visited);
+  }
+
+  @Test
+  public void compiledPathsAreCached() {
+    assertSame(JsonPath.compile("$.items[0].name"), JsonPath.compile("$.items[0].name"));
+    for (int i = 0; i < 2000; i++) {
+      JsonPath.compile("$.items[" + i + "]");
+    }
+    assertEquals(Arrays.<Object>asList("pen"), select("$.items[0].name"));
+  }
+
+  @Test
+  public void rejectsMalformedPaths() {
+    for (String path : Arrays.asList("name", "$.", "$[", "$[0", "$['name", "$.items[x]", "$.items[?(@.price >)]",
+                                     "$.items[?(@..name)]", "$.items[?(@[*] == 1)]", "$.items[?(@.price = 1)]",
+                                     "$.items[?(@.price > 1.2.3)]", "$ name")) {
+      try {
+        JsonPath.compile(path);
+        fail(path);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  private static List<Object> select(String path) {
+    return JsonPath.compile(path).select(DOCUMENT);
+  }
+}